@@ -0,0 +1,574 @@
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.Collections;
+import java.util.Random;
+
+// Represents a list of paths through the spanning trees of bands between two cells
+// on the edge of a band or where its tree branches, and of passages crossing between
+// two bands, kept in parallel arrays. The cells at the ends are numbered densely as
+// nodes, passages are numbered as in the whole maze, and weight and passage are
+// those of the heaviest passage on the path
+class BoundaryEdges {
+  int[] from;
+  int[] to;
+  int[] weights;
+  long[] passages;
+  // the band whose passages each passage is stored with
+  int[] bands;
+  // the edges that are passages crossing between bands
+  BitSet crossings;
+  int size;
+
+  BoundaryEdges() {
+    this.from = new int[16];
+    this.to = new int[16];
+    this.weights = new int[16];
+    this.passages = new long[16];
+    this.bands = new int[16];
+    this.crossings = new BitSet();
+  }
+
+  // EFFECT: adds an edge to the end of the list
+  void add(int from, int to, int weight, long passage, int band, boolean crossing) {
+    if (this.size == this.from.length) {
+      int capacity = 2 * this.size;
+      this.from = Arrays.copyOf(this.from, capacity);
+      this.to = Arrays.copyOf(this.to, capacity);
+      this.weights = Arrays.copyOf(this.weights, capacity);
+      this.passages = Arrays.copyOf(this.passages, capacity);
+      this.bands = Arrays.copyOf(this.bands, capacity);
+    }
+    this.from[this.size] = from;
+    this.to[this.size] = to;
+    this.weights[this.size] = weight;
+    this.passages[this.size] = passage;
+    this.bands[this.size] = band;
+    this.crossings.set(this.size, crossing);
+    this.size++;
+  }
+
+  // EFFECT: sorts the edges from start to end by passage, given that their passages
+  // are at most 2^31 - 1 past the given offset
+  void sortByPassage(int start, int end, long offset) {
+    // each key is the passage past the offset followed by the edge's place in the range
+    long[] keys = new long[end - start];
+    for (int i = start; i < end; i++) {
+      keys[i - start] = (this.passages[i] - offset) << 32 | (i - start);
+    }
+    Arrays.sort(keys);
+    int[] from = Arrays.copyOfRange(this.from, start, end);
+    int[] to = Arrays.copyOfRange(this.to, start, end);
+    int[] weights = Arrays.copyOfRange(this.weights, start, end);
+    long[] passages = Arrays.copyOfRange(this.passages, start, end);
+    int[] bands = Arrays.copyOfRange(this.bands, start, end);
+    BitSet crossings = this.crossings.get(start, end);
+    for (int i = 0; i < keys.length; i++) {
+      int old = (int) keys[i];
+      this.from[start + i] = from[old];
+      this.to[start + i] = to[old];
+      this.weights[start + i] = weights[old];
+      this.passages[start + i] = passages[old];
+      this.bands[start + i] = bands[old];
+      this.crossings.set(start + i, crossings.get(old));
+    }
+  }
+
+  // returns the edges in the order FlatKruskal would visit their passages, by weight
+  // and then by passage, as long keys whose low 32 bits are the edge's index.
+  // The edges must already be sorted by passage
+  long[] kruskalOrder() {
+    long[] keys = new long[this.size];
+    for (int i = 0; i < this.size; i++) {
+      keys[i] = (long) this.weights[i] << 32 | i;
+    }
+    Arrays.sort(keys);
+    return keys;
+  }
+}
+
+// Represents the rows rowStart to rowEnd - 1 of a BandedMaze, generated on their own
+// with the weights the whole maze would give them. Besides its passages, a band keeps
+// its spanning tree shrunk down to the cells of its top and bottom rows: the only
+// passages of the band that can be left out of the whole maze are the heaviest ones
+// on the paths between those cells. The cells of the top row are nodes 0 to width - 1,
+// those of the bottom row the next width nodes if it is another row, and the cells where
+// the paths branch come after them in order
+class MazeBand {
+  static final int MAGIC = 0x4D5A4245;
+
+  int width;
+  int rowStart;
+  int rowEnd;
+  int index;
+  FlatKruskal kruskal;
+  // the cells where the paths of the boundary tree branch, in increasing order
+  int[] branches;
+
+  MazeBand(int width, int rowStart, int rowEnd, int index) {
+    this.width = width;
+    this.rowStart = rowStart;
+    this.rowEnd = rowEnd;
+    this.index = index;
+  }
+
+  // returns the number of the band's first cell in the whole maze
+  long firstCell() {
+    return (long) this.rowStart * this.width;
+  }
+
+  // EFFECT: generates this band's spanning tree
+  FlatMaze generate(long seed, int horizontalPreference) {
+    this.kruskal = new FlatKruskal(new RectTopology(this.width, this.rowEnd - this.rowStart),
+        seed, horizontalPreference, 2 * this.firstCell());
+    return this.kruskal.runKruskalImmediately();
+  }
+
+  // returns whether the given cell of the band is in its top or bottom row
+  boolean isKey(int cell) {
+    return cell < this.width || cell >= (this.rowEnd - this.rowStart - 1) * this.width;
+  }
+
+  // returns the number of cells in the band's top and bottom rows
+  int keyCount() {
+    return this.rowEnd - this.rowStart == 1 ? this.width : 2 * this.width;
+  }
+
+  // returns the node of the given cell of the band's top or bottom row
+  int keyNode(int cell) {
+    return cell < this.width ? cell : cell - (this.rowEnd - this.rowStart - 2) * this.width;
+  }
+
+  // returns the node of the given cell in the bottom row at the given column
+  int bottomNode(int column) {
+    return this.keyCount() - this.width + column;
+  }
+
+  // returns the node of the given key or branching cell,
+  // given the branching cells in increasing order
+  int node(int cell, int[] branches) {
+    if (this.isKey(cell)) {
+      return this.keyNode(cell);
+    }
+    return this.keyCount() + Arrays.binarySearch(branches, cell);
+  }
+
+  // returns the band's spanning tree shrunk to paths between the cells of its
+  // top and bottom rows and the cells where those paths branch
+  // EFFECT: keeps the branching cells in branches
+  BoundaryEdges boundaryTree() {
+    FlatMaze maze = this.kruskal.maze;
+    ITopology topology = maze.topology;
+    int cells = topology.cellCount();
+    BitSet tree = (BitSet) maze.passages.clone();
+    byte[] degrees = new byte[cells];
+    IntQueue leaves = new IntQueue();
+    for (int cell = 0; cell < cells; cell++) {
+      for (int direction = 0; direction < topology.directions(); direction++) {
+        if (maze.isOpen(cell, direction)) {
+          degrees[cell]++;
+        }
+      }
+      if (degrees[cell] == 1 && !this.isKey(cell)) {
+        leaves.add(cell);
+      }
+    }
+
+    // prunes the branches that lead to no key cell
+    while (!leaves.isEmpty()) {
+      int cell = leaves.remove();
+      for (int direction = 0; direction < topology.directions(); direction++) {
+        int edge = maze.edge(cell, direction);
+        if (edge >= 0 && tree.get(edge)) {
+          tree.clear(edge);
+          degrees[cell]--;
+          int next = topology.neighbor(cell, direction);
+          degrees[next]--;
+          if (degrees[next] == 1 && !this.isKey(next)) {
+            leaves.add(next);
+          }
+        }
+      }
+    }
+
+    IntQueue branching = new IntQueue();
+    for (int cell = 0; cell < cells; cell++) {
+      if (!this.isKey(cell) && degrees[cell] >= 3) {
+        branching.add(cell);
+      }
+    }
+    this.branches = new int[branching.size];
+    for (int i = 0; i < this.branches.length; i++) {
+      this.branches[i] = branching.remove();
+    }
+
+    // follows each path from a key or branching cell to the next one
+    BoundaryEdges edges = new BoundaryEdges();
+    for (int cell = 0; cell < cells; cell++) {
+      if (!this.isKey(cell) && degrees[cell] < 3) {
+        continue;
+      }
+      for (int direction = 0; direction < topology.directions(); direction++) {
+        int edge = maze.edge(cell, direction);
+        if (edge < 0 || !tree.get(edge)) {
+          continue;
+        }
+        int heaviest = edge;
+        int next = topology.neighbor(cell, direction);
+        int back = topology.opposite(direction);
+        while (!this.isKey(next) && degrees[next] == 2) {
+          int out = 0;
+          while (out == back || maze.edge(next, out) < 0 || !tree.get(maze.edge(next, out))) {
+            out++;
+          }
+          edge = maze.edge(next, out);
+          if (this.isHeavier(edge, heaviest)) {
+            heaviest = edge;
+          }
+          next = topology.neighbor(next, out);
+          back = topology.opposite(out);
+        }
+        // each path is followed from both ends, and kept from the one with the smaller index
+        if (cell < next) {
+          edges.add(this.node(cell, this.branches), this.node(next, this.branches),
+              this.kruskal.weight(heaviest), this.kruskal.edgeOffset + heaviest,
+              this.index, false);
+        }
+      }
+    }
+    return edges;
+  }
+
+  // returns whether Kruskal's algorithm visits the first passage after the second
+  boolean isHeavier(int edge, int than) {
+    int weight = this.kruskal.weight(edge);
+    int thanWeight = this.kruskal.weight(than);
+    return weight > thanWeight || (weight == thanWeight && edge > than);
+  }
+
+  // EFFECT: writes the band's passages and its boundary tree to the given files
+  void writeTo(Path passagesFile, Path boundaryFile) throws IOException {
+    try (DataOutputStream out = new DataOutputStream(
+        new BufferedOutputStream(Files.newOutputStream(passagesFile), 1 << 16))) {
+      long[] words = this.kruskal.maze.passages.toLongArray();
+      out.writeInt(words.length);
+      for (long word : words) {
+        out.writeLong(word);
+      }
+    }
+    try (DataOutputStream out = new DataOutputStream(
+        new BufferedOutputStream(Files.newOutputStream(boundaryFile), 1 << 16))) {
+      BoundaryEdges edges = this.boundaryTree();
+      out.writeInt(MAGIC);
+      out.writeInt(this.keyCount() + this.branches.length);
+      out.writeInt(edges.size);
+      for (int i = 0; i < edges.size; i++) {
+        out.writeInt(edges.from[i]);
+        out.writeInt(edges.to[i]);
+        out.writeInt(edges.weights[i]);
+        out.writeLong(edges.passages[i]);
+      }
+    }
+  }
+
+  // EFFECT: adds the boundary tree written by writeTo for the band with the given index
+  // to the given edges, numbering its nodes from the given first node,
+  // returns the number of nodes of the band
+  static int readBoundary(Path boundaryFile, int index, BoundaryEdges edges, int firstNode)
+      throws IOException {
+    try (DataInputStream in = new DataInputStream(
+        new BufferedInputStream(Files.newInputStream(boundaryFile), 1 << 16))) {
+      if (in.readInt() != MAGIC) {
+        throw new IOException("Not a band boundary: " + boundaryFile);
+      }
+      int nodes = in.readInt();
+      int count = in.readInt();
+      for (int i = 0; i < count; i++) {
+        edges.add(firstNode + in.readInt(), firstNode + in.readInt(), in.readInt(),
+            in.readLong(), index, false);
+      }
+      return nodes;
+    }
+  }
+
+  // reads the passages written by writeTo
+  static BitSet readPassages(Path passagesFile) throws IOException {
+    try (DataInputStream in = new DataInputStream(
+        new BufferedInputStream(Files.newInputStream(passagesFile), 1 << 16))) {
+      long[] words = new long[in.readInt()];
+      for (int i = 0; i < words.length; i++) {
+        words[i] = in.readLong();
+      }
+      return BitSet.valueOf(words);
+    }
+  }
+
+  // generates one band in a worker process started by BandedMaze
+  public static void main(String[] args) throws IOException {
+    MazeBand band = new MazeBand(Integer.parseInt(args[0]), Integer.parseInt(args[1]),
+        Integer.parseInt(args[2]), Integer.parseInt(args[3]));
+    band.generate(Long.parseLong(args[4]), Integer.parseInt(args[5]));
+    band.writeTo(Paths.get(args[6]), Paths.get(args[7]));
+  }
+}
+
+// Represents a rectangular maze too big for one JVM, generated as horizontal bands
+// in separate worker processes. The bands' boundary trees and the passages crossing
+// between bands are joined by one more Kruskal's algorithm, which needs memory only
+// for the rows at the edges of the bands. The result is the same maze FlatKruskal
+// would generate for the whole grid with the same seed
+class BandedMaze {
+  int width;
+  int height;
+  int bands;
+  long seed;
+  int horizontalPreference;
+  Path directory;
+
+  // the passages of each band that the merge opens or closes,
+  // numbered from the band's first passage
+  IntQueue[] flips;
+
+  BandedMaze(int width, int height, int bands, long seed, int horizontalPreference,
+      Path directory) {
+    this.width = width;
+    this.height = height;
+    this.bands = Math.min(bands, height);
+    this.seed = seed;
+    this.horizontalPreference = horizontalPreference;
+    this.directory = directory;
+  }
+
+  // returns the first row of the given band, or the height for the band after the last
+  int rowStart(int band) {
+    return (int) ((long) this.height * band / this.bands);
+  }
+
+  Path passagesFile(int band) {
+    return this.directory.resolve("band-" + band + ".passages");
+  }
+
+  Path boundaryFile(int band) {
+    return this.directory.resolve("band-" + band + ".boundary");
+  }
+
+  // returns the band with the given index
+  MazeBand band(int band) {
+    return new MazeBand(this.width, this.rowStart(band), this.rowStart(band + 1), band);
+  }
+
+  // EFFECT: generates every band in a worker process of its own, running as many
+  // at once as there are processors. Workers get the given -Xmx if it is not null.
+  // If a worker fails, the others still running are killed before the failure is thrown
+  void generateBands(String workerHeap) throws IOException, InterruptedException {
+    String java = Paths.get(System.getProperty("java.home"), "bin", "java").toString();
+    int parallel = Runtime.getRuntime().availableProcessors();
+    ArrayDeque<Process> running = new ArrayDeque<Process>();
+    try {
+      for (int index = 0; index < this.bands; index++) {
+        if (running.size() == parallel) {
+          this.finish(running.removeFirst());
+        }
+        MazeBand band = this.band(index);
+        ArrayList<String> command = new ArrayList<String>();
+        command.add(java);
+        if (workerHeap != null) {
+          command.add("-Xmx" + workerHeap);
+        }
+        Collections.addAll(command, "-cp", System.getProperty("java.class.path"), "MazeBand",
+            Integer.toString(this.width), Integer.toString(band.rowStart),
+            Integer.toString(band.rowEnd), Integer.toString(index),
+            Long.toString(this.seed), Integer.toString(this.horizontalPreference),
+            this.passagesFile(index).toString(), this.boundaryFile(index).toString());
+        running.add(new ProcessBuilder(command).inheritIO().start());
+      }
+      while (!running.isEmpty()) {
+        this.finish(running.removeFirst());
+      }
+    } finally {
+      for (Process worker : running) {
+        worker.destroyForcibly();
+      }
+    }
+  }
+
+  // EFFECT: waits for the given worker, throwing if it failed
+  void finish(Process worker) throws IOException, InterruptedException {
+    int exit = worker.waitFor();
+    if (exit != 0) {
+      throw new IOException("Band worker exited with " + exit);
+    }
+  }
+
+  // EFFECT: generates every band in this process, one after another
+  void generateBandsHere() throws IOException {
+    for (int index = 0; index < this.bands; index++) {
+      MazeBand band = this.band(index);
+      band.generate(this.seed, this.horizontalPreference);
+      band.writeTo(this.passagesFile(index), this.boundaryFile(index));
+    }
+  }
+
+  // EFFECT: adds the passages crossing from the bottom row of the given band to the
+  // top row of the next band, given the first nodes of both bands
+  void addCrossings(BoundaryEdges edges, int band, int firstNode, int nextFirstNode) {
+    MazeBand bottom = this.band(band);
+    long bottomRow = (long) (this.rowStart(band + 1) - 1) * this.width;
+    for (int column = 0; column < this.width; column++) {
+      long cell = bottomRow + column;
+      edges.add(firstNode + bottom.bottomNode(column), nextFirstNode + column,
+          FlatKruskal.weight(this.seed, this.horizontalPreference, 2 * cell + 1, false),
+          2 * cell + 1, band, true);
+    }
+  }
+
+  // EFFECT: runs Kruskal's algorithm over the boundary trees and crossing passages,
+  // recording the crossings it accepts and the band passages it leaves out in flips
+  void merge() throws IOException {
+    // each band's edges and the crossings below it have passages in the band's range,
+    // so sorting each band's by passage sorts them all
+    BoundaryEdges edges = new BoundaryEdges();
+    int nodes = 0;
+    for (int band = 0; band < this.bands; band++) {
+      int start = edges.size;
+      int firstNode = nodes;
+      nodes += MazeBand.readBoundary(this.boundaryFile(band), band, edges, firstNode);
+      if (band < this.bands - 1) {
+        this.addCrossings(edges, band, firstNode, nodes);
+      }
+      edges.sortByPassage(start, edges.size, 2 * this.band(band).firstCell());
+    }
+
+    this.flips = new IntQueue[this.bands];
+    for (int band = 0; band < this.bands; band++) {
+      this.flips[band] = new IntQueue();
+    }
+    int[] representatives = new int[nodes];
+    Arrays.fill(representatives, -1);
+    for (long key : edges.kruskalOrder()) {
+      int edge = (int) key;
+      int from = findRepresentative(representatives, edges.from[edge]);
+      int to = findRepresentative(representatives, edges.to[edge]);
+      boolean crossing = edges.crossings.get(edge);
+      int band = edges.bands[edge];
+      int passage = (int) (edges.passages[edge] - 2 * this.band(band).firstCell());
+      if (from != to) {
+        unionRepresentative(representatives, from, to);
+        if (crossing) {
+          this.flips[band].add(passage);
+        }
+      } else if (!crossing) {
+        this.flips[band].add(passage);
+      }
+    }
+  }
+
+  // finds the representative of a given node, halving the path as it goes
+  static int findRepresentative(int[] representatives, int node) {
+    while (representatives[node] >= 0) {
+      int parent = representatives[node];
+      if (representatives[parent] >= 0) {
+        representatives[node] = representatives[parent];
+      }
+      node = representatives[node];
+    }
+    return node;
+  }
+
+  // unions two representatives, hanging the smaller set under the larger
+  static void unionRepresentative(int[] representatives, int a, int b) {
+    if (representatives[a] > representatives[b]) {
+      int swap = a;
+      a = b;
+      b = swap;
+    }
+    representatives[a] += representatives[b];
+    representatives[b] = a;
+  }
+
+  // EFFECT: writes the whole maze to the given file, one band at a time, in the format
+  // of the .maze files of BatchPipeline without a solution, using up the flips
+  void writeMaze(Path file) throws IOException {
+    long bits = 2L * this.width * this.height;
+    try (DataOutputStream out = new DataOutputStream(
+        new BufferedOutputStream(Files.newOutputStream(file), 1 << 16))) {
+      out.writeInt(this.width);
+      out.writeInt(this.height);
+      out.writeInt((int) ((bits + 63) / 64));
+      long pending = 0;
+      int pendingBits = 0;
+      for (int band = 0; band < this.bands; band++) {
+        BitSet passages = MazeBand.readPassages(this.passagesFile(band));
+        while (!this.flips[band].isEmpty()) {
+          passages.flip(this.flips[band].remove());
+        }
+        long[] words = passages.toLongArray();
+        int length = 2 * this.width * (this.rowStart(band + 1) - this.rowStart(band));
+        for (int i = 0; i * 64 < length; i++) {
+          // appends the next count bits of the band after the bits still pending
+          long word = i < words.length ? words[i] : 0;
+          int count = Math.min(64, length - i * 64);
+          pending |= word << pendingBits;
+          if (pendingBits + count >= 64) {
+            out.writeLong(pending);
+            pending = pendingBits == 0 ? 0 : word >>> (64 - pendingBits);
+            pendingBits += count - 64;
+          } else {
+            pendingBits += count;
+          }
+        }
+        Files.delete(this.passagesFile(band));
+        Files.delete(this.boundaryFile(band));
+      }
+      if (pendingBits > 0) {
+        out.writeLong(pending);
+      }
+    }
+  }
+
+  // reads a maze written by writeMaze
+  static FlatMaze readMaze(Path file) throws IOException {
+    try (DataInputStream in = new DataInputStream(
+        new BufferedInputStream(Files.newInputStream(file), 1 << 16))) {
+      RectTopology topology = new RectTopology(in.readInt(), in.readInt());
+      long[] words = new long[in.readInt()];
+      for (int i = 0; i < words.length; i++) {
+        words[i] = in.readLong();
+      }
+      return new FlatMaze(topology, BitSet.valueOf(words));
+    }
+  }
+
+  public static void main(String[] args) throws Exception {
+    if (args.length < 4) {
+      System.out.println("usage: BandedMaze width height bands outputDirectory "
+          + "[horizontalPreference [seed [workerHeap]]]");
+      return;
+    }
+    Path directory = Paths.get(args[3]);
+    Files.createDirectories(directory);
+    BandedMaze maze = new BandedMaze(Integer.parseInt(args[0]), Integer.parseInt(args[1]),
+        Integer.parseInt(args[2]),
+        args.length > 5 ? Long.parseLong(args[5]) : new Random().nextLong(),
+        args.length > 4 ? Integer.parseInt(args[4]) : 1, directory);
+
+    long start = System.nanoTime();
+    maze.generateBands(args.length > 6 ? args[6] : null);
+    long generated = System.nanoTime();
+    maze.merge();
+    Path file = directory.resolve("maze.maze");
+    maze.writeMaze(file);
+    System.out.println("Generated " + maze.bands + " bands in "
+        + (generated - start) / 1000000 + " ms, merged and wrote " + file + " in "
+        + (System.nanoTime() - generated) / 1000000 + " ms");
+  }
+}
@@ -0,0 +1,339 @@
+import java.awt.Color;
+import java.awt.image.BufferedImage;
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Random;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import javax.imageio.ImageIO;
+
+// Represents one maze moving through a BatchPipeline, filled in stage by stage
+class MazeJob {
+  // passed down the pipeline after the last job
+  static final MazeJob END = new MazeJob(-1);
+
+  int index;
+  Kruskal kruskal;
+  FlatMaze maze;
+  int[] solution;
+  byte[] png;
+
+  MazeJob(int index) {
+    this.index = index;
+  }
+}
+
+// Represents the work one stage does to a job
+interface IJobStep {
+  // EFFECT: does this stage's work on the given job
+  void apply(MazeJob job) throws Exception;
+}
+
+// Represents a stage of a BatchPipeline: workers take jobs from a bounded input queue,
+// apply the step and put them on a bounded output queue, blocking when it is full
+class PipelineStage {
+  String name;
+  BlockingQueue<MazeJob> input;
+  BlockingQueue<MazeJob> output;
+  IJobStep step;
+  int workers;
+
+  AtomicInteger running;
+  AtomicLong processed;
+  AtomicLong busyNanos;
+  long queueDepthSum;
+  int queueDepthSamples;
+  int maxQueueDepth;
+  CountDownLatch finished;
+  volatile Throwable failure;
+
+  PipelineStage(String name, BlockingQueue<MazeJob> input, BlockingQueue<MazeJob> output,
+      int workers, IJobStep step) {
+    this.name = name;
+    this.input = input;
+    this.output = output;
+    this.workers = workers;
+    this.step = step;
+    this.running = new AtomicInteger(workers);
+    this.processed = new AtomicLong();
+    this.busyNanos = new AtomicLong();
+    this.finished = new CountDownLatch(1);
+  }
+
+  // EFFECT: starts this stage's workers on the given executor
+  void start(ExecutorService executor) {
+    for (int i = 0; i < this.workers; i++) {
+      executor.execute(this::work);
+    }
+  }
+
+  // EFFECT: takes and processes jobs until the END job arrives. The END job is put back
+  // for the other workers, and the last worker to stop passes it on to the next stage
+  void work() {
+    try {
+      while (true) {
+        MazeJob job = this.input.take();
+        if (job == MazeJob.END) {
+          this.input.put(job);
+          break;
+        }
+        long start = System.nanoTime();
+        this.step.apply(job);
+        this.busyNanos.addAndGet(System.nanoTime() - start);
+        this.processed.incrementAndGet();
+        if (this.output != null) {
+          this.output.put(job);
+        }
+      }
+    } catch (Throwable t) {
+      this.failure = t;
+    } finally {
+      if (this.running.decrementAndGet() == 0) {
+        if (this.output != null) {
+          try {
+            this.output.put(MazeJob.END);
+          } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+          }
+        }
+        this.finished.countDown();
+      }
+    }
+  }
+
+  // EFFECT: records the current depth of this stage's input queue
+  void sampleQueue() {
+    int depth = this.input.size();
+    this.queueDepthSum += depth;
+    this.queueDepthSamples++;
+    this.maxQueueDepth = Math.max(this.maxQueueDepth, depth);
+  }
+
+  // returns a line reporting this stage's throughput and input queue depth
+  String report(long elapsedNanos) {
+    double seconds = elapsedNanos / 1e9;
+    return String.format("%-8s %6d jobs  %8.1f jobs/s  busy %6.1f s  queue avg %5.1f max %3d/%d",
+        this.name, this.processed.get(), this.processed.get() / seconds,
+        this.busyNanos.get() / 1e9,
+        this.queueDepthSamples == 0 ? 0.0 : (double) this.queueDepthSum / this.queueDepthSamples,
+        this.maxQueueDepth, this.input.size() + this.input.remainingCapacity());
+  }
+}
+
+// Represents a batch job that generates, solves, renders and writes many mazes at once.
+// Generating and solving are CPU bound and get one platform thread per core, while
+// encoding images and writing files block on I/O and run on virtual threads when the
+// JVM has them. Bounded queues between the stages hold back any stage that gets ahead
+class BatchPipeline {
+  static final int QUEUE_CAPACITY = 64;
+  static final int IO_WORKERS = 64;
+
+  int count;
+  int mazeWidth;
+  int mazeHeight;
+  int horizontalPreference;
+  long seed;
+  Path outputDirectory;
+  ArrayList<PipelineStage> stages;
+
+  BatchPipeline(int count, int mazeWidth, int mazeHeight, int horizontalPreference,
+      long seed, Path outputDirectory) {
+    this.count = count;
+    this.mazeWidth = mazeWidth;
+    this.mazeHeight = mazeHeight;
+    this.horizontalPreference = horizontalPreference;
+    this.seed = seed;
+    this.outputDirectory = outputDirectory;
+    this.stages = new ArrayList<PipelineStage>();
+  }
+
+  // runs: BatchPipeline count width height outputDirectory [horizontalPreference [seed]]
+  public static void main(String[] args) throws Exception {
+    if (args.length < 4) {
+      System.out.println("usage: BatchPipeline count width height outputDirectory "
+          + "[horizontalPreference [seed]]");
+      return;
+    }
+    BatchPipeline pipeline = new BatchPipeline(Integer.parseInt(args[0]),
+        Integer.parseInt(args[1]), Integer.parseInt(args[2]),
+        args.length > 4 ? Integer.parseInt(args[4]) : 1,
+        args.length > 5 ? Long.parseLong(args[5]) : new Random().nextLong(),
+        Paths.get(args[3]));
+    pipeline.run();
+  }
+
+  // returns an executor that starts a virtual thread per task if this JVM has them,
+  // or a cached pool of platform threads if it does not
+  static ExecutorService ioExecutor() {
+    try {
+      return (ExecutorService) Executors.class
+          .getMethod("newVirtualThreadPerTaskExecutor").invoke(null);
+    } catch (ReflectiveOperationException e) {
+      return Executors.newCachedThreadPool();
+    }
+  }
+
+  // EFFECT: generates a maze from the job's index
+  void generate(MazeJob job) {
+    Graph graph = new Graph(this.mazeWidth, this.mazeHeight, this.horizontalPreference,
+        new Random(this.seed + job.index));
+    job.kruskal = new Kruskal(graph);
+    job.kruskal.runKruskalImmediately();
+  }
+
+  // EFFECT: solves the job's maze from the top left to the bottom right cell,
+  // and lets go of its cells and edges
+  void solve(MazeJob job) {
+    job.maze = FlatMaze.fromEdges(job.kruskal.edgesInTree, this.mazeWidth, this.mazeHeight);
+    job.kruskal = null;
+    job.solution = new FlatSolver(job.maze).path(0, this.mazeWidth * this.mazeHeight - 1);
+  }
+
+  // EFFECT: draws the job's maze with its solution, a pixel per cell and per wall,
+  // and encodes it as a PNG
+  void render(MazeJob job) throws IOException {
+    BufferedImage image = new BufferedImage(2 * this.mazeWidth + 1, 2 * this.mazeHeight + 1,
+        BufferedImage.TYPE_BYTE_INDEXED);
+    int white = Color.white.getRGB();
+    int path = Color.blue.getRGB();
+    for (int cell = 0; cell < this.mazeWidth * this.mazeHeight; cell++) {
+      int x = 2 * (cell % this.mazeWidth) + 1;
+      int y = 2 * (cell / this.mazeWidth) + 1;
+      image.setRGB(x, y, white);
+      if (job.maze.isOpen(cell, 0)) {
+        image.setRGB(x + 1, y, white);
+      }
+      if (job.maze.isOpen(cell, 1)) {
+        image.setRGB(x, y + 1, white);
+      }
+    }
+    for (int i = 0; i < job.solution.length; i++) {
+      int cell = job.solution[i];
+      int x = 2 * (cell % this.mazeWidth) + 1;
+      int y = 2 * (cell / this.mazeWidth) + 1;
+      image.setRGB(x, y, path);
+      if (i > 0) {
+        int previous = job.solution[i - 1];
+        image.setRGB(x + (2 * (previous % this.mazeWidth) + 1 - x) / 2,
+            y + (2 * (previous / this.mazeWidth) + 1 - y) / 2, path);
+      }
+    }
+    ByteArrayOutputStream png = new ByteArrayOutputStream();
+    ImageIO.write(image, "png", png);
+    job.png = png.toByteArray();
+  }
+
+  // EFFECT: writes the job's thumbnail, and its passages and solution as a binary file
+  void write(MazeJob job) throws IOException {
+    String name = String.format("maze-%07d", job.index);
+    Files.write(this.outputDirectory.resolve(name + ".png"), job.png);
+    try (DataOutputStream out = new DataOutputStream(
+        Files.newOutputStream(this.outputDirectory.resolve(name + ".maze")))) {
+      out.writeInt(this.mazeWidth);
+      out.writeInt(this.mazeHeight);
+      long[] words = job.maze.passages.toLongArray();
+      out.writeInt(words.length);
+      for (long word : words) {
+        out.writeLong(word);
+      }
+      out.writeInt(job.solution.length);
+      for (int cell : job.solution) {
+        out.writeInt(cell);
+      }
+    }
+  }
+
+  // EFFECT: runs every job through the pipeline, printing each stage's
+  // throughput and queue depth every second and at the end
+  void run() throws Exception {
+    Files.createDirectories(this.outputDirectory);
+    int cores = Runtime.getRuntime().availableProcessors();
+
+    BlockingQueue<MazeJob> toGenerate = new ArrayBlockingQueue<MazeJob>(QUEUE_CAPACITY);
+    BlockingQueue<MazeJob> toSolve = new ArrayBlockingQueue<MazeJob>(QUEUE_CAPACITY);
+    BlockingQueue<MazeJob> toRender = new ArrayBlockingQueue<MazeJob>(QUEUE_CAPACITY);
+    BlockingQueue<MazeJob> toWrite = new ArrayBlockingQueue<MazeJob>(QUEUE_CAPACITY);
+    this.stages.add(new PipelineStage("generate", toGenerate, toSolve, cores, this::generate));
+    this.stages.add(new PipelineStage("solve", toSolve, toRender, cores, this::solve));
+    this.stages.add(new PipelineStage("render", toRender, toWrite, IO_WORKERS, this::render));
+    this.stages.add(new PipelineStage("write", toWrite, null, IO_WORKERS, this::write));
+
+    ExecutorService cpu = Executors.newFixedThreadPool(2 * cores);
+    ExecutorService io = ioExecutor();
+    this.stages.get(0).start(cpu);
+    this.stages.get(1).start(cpu);
+    this.stages.get(2).start(io);
+    this.stages.get(3).start(io);
+
+    long start = System.nanoTime();
+    Thread feeder = new Thread(() -> {
+      try {
+        for (int i = 0; i < this.count; i++) {
+          toGenerate.put(new MazeJob(i));
+        }
+        toGenerate.put(MazeJob.END);
+      } catch (InterruptedException e) {
+        Thread.currentThread().interrupt();
+      }
+    });
+    feeder.start();
+
+    PipelineStage last = this.stages.get(this.stages.size() - 1);
+    long nextReport = start;
+    while (last.finished.getCount() > 0) {
+      for (PipelineStage stage : this.stages) {
+        stage.sampleQueue();
+      }
+      if (System.nanoTime() >= nextReport + 1000000000L) {
+        nextReport = System.nanoTime();
+        this.printReport(nextReport - start);
+      }
+      last.finished.await(100, TimeUnit.MILLISECONDS);
+      if (this.failed() != null) {
+        break;
+      }
+    }
+    PipelineStage failed = this.failed();
+    if (failed != null) {
+      feeder.interrupt();
+      cpu.shutdownNow();
+      io.shutdownNow();
+      throw new RuntimeException("Stage " + failed.name + " failed", failed.failure);
+    }
+    feeder.join();
+    cpu.shutdown();
+    io.shutdown();
+
+    System.out.println("Done: " + this.count + " mazes of " + this.mazeWidth + " x "
+        + this.mazeHeight + " in " + (System.nanoTime() - start) / 1000000 + " ms");
+    this.printReport(System.nanoTime() - start);
+  }
+
+  // EFFECT: prints a line for every stage
+  void printReport(long elapsedNanos) {
+    for (PipelineStage stage : this.stages) {
+      System.out.println(stage.report(elapsedNanos));
+    }
+  }
+
+  // returns the first stage that failed, or null if none has
+  PipelineStage failed() {
+    for (PipelineStage stage : this.stages) {
+      if (stage.failure != null) {
+        return stage;
+      }
+    }
+    return null;
+  }
+}
@@ -0,0 +1,148 @@
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Random;
+
+// Represents one square chunk of an endless maze, kept as a flat maze
+// so the cells and edges used to generate it can be thrown away
+class MazeChunk {
+  int chunkX;
+  int chunkY;
+  FlatMaze maze;
+
+  MazeChunk(int chunkX, int chunkY, FlatMaze maze) {
+    this.chunkX = chunkX;
+    this.chunkY = chunkY;
+    this.maze = maze;
+  }
+}
+
+// Represents a bounded cache of chunks that evicts the least recently used chunk
+class ChunkCache {
+  // the cached chunks by key, from least to most recently used
+  LinkedHashMap<Long, MazeChunk> chunks;
+  int capacity;
+  int hits;
+  int misses;
+  int evictions;
+
+  ChunkCache(int capacity) {
+    this.chunks = new LinkedHashMap<Long, MazeChunk>(16, 0.75f, true);
+    this.capacity = capacity;
+  }
+
+  // returns the key of the chunk at the given chunk coordinates
+  static long key(int chunkX, int chunkY) {
+    return ((long) chunkX << 32) | (chunkY & 0xFFFFFFFFL);
+  }
+
+  // returns the number of cached chunks
+  int size() {
+    return this.chunks.size();
+  }
+
+  // returns the chunk with the given key, or null if it is not cached
+  // EFFECT: counts a hit or a miss and marks the chunk as most recently used
+  MazeChunk get(long key) {
+    MazeChunk chunk = this.chunks.get(key);
+    if (chunk != null) {
+      this.hits++;
+    } else {
+      this.misses++;
+    }
+    return chunk;
+  }
+
+  // EFFECT: caches the given chunk under the given key,
+  // evicting the least recently used chunk once there are more than capacity
+  void put(long key, MazeChunk chunk) {
+    this.chunks.put(key, chunk);
+    if (this.chunks.size() > this.capacity) {
+      Iterator<Long> eldest = this.chunks.keySet().iterator();
+      eldest.next();
+      eldest.remove();
+      this.evictions++;
+    }
+  }
+}
+
+// Represents an endless maze made of chunks that are generated when first needed.
+// Each chunk is a perfect maze from Kruskal's algorithm seeded by the world seed and
+// its coordinates, and neighboring chunks are joined by one opening on their shared
+// border chosen the same way, so the maze looks the same however it is explored
+class ChunkedMaze {
+  long worldSeed;
+  int chunkSize;
+  int horizontalPreference;
+  ChunkCache cache;
+
+  ChunkedMaze(long worldSeed, int chunkSize, int horizontalPreference, int cacheCapacity) {
+    if (chunkSize < 2) {
+      throw new IllegalArgumentException("Chunks must be at least 2 cells wide");
+    }
+    this.worldSeed = worldSeed;
+    this.chunkSize = chunkSize;
+    this.horizontalPreference = horizontalPreference;
+    this.cache = new ChunkCache(cacheCapacity);
+  }
+
+  // returns a seed derived from the world seed, the chunk coordinates and a salt
+  long seedFor(int chunkX, int chunkY, int salt) {
+    long z = FlatKruskal.mix(this.worldSeed + salt * 0x632BE59BD9B4E019L);
+    z = FlatKruskal.mix(z + chunkX * 0x9E3779B97F4A7C15L);
+    return FlatKruskal.mix(z + chunkY * 0xC2B2AE3D27D4EB4FL);
+  }
+
+  // returns the chunk at the given chunk coordinates, generating it if it is not cached
+  MazeChunk chunk(int chunkX, int chunkY) {
+    long key = ChunkCache.key(chunkX, chunkY);
+    MazeChunk chunk = this.cache.get(key);
+    if (chunk != null) {
+      return chunk;
+    }
+    chunk = this.generate(chunkX, chunkY);
+    this.cache.put(key, chunk);
+    return chunk;
+  }
+
+  // generates the chunk at the given chunk coordinates
+  MazeChunk generate(int chunkX, int chunkY) {
+    Graph graph = new Graph(this.chunkSize, this.chunkSize, this.horizontalPreference,
+        new Random(this.seedFor(chunkX, chunkY, 0)));
+    Kruskal kruskal = new Kruskal(graph);
+    kruskal.runKruskalImmediately();
+    return new MazeChunk(chunkX, chunkY,
+        FlatMaze.fromEdges(kruskal.edgesInTree, this.chunkSize, this.chunkSize));
+  }
+
+  // returns the row of the opening between the given chunk and the chunk to its right
+  int eastOpening(int chunkX, int chunkY) {
+    return (int) Long.remainderUnsigned(this.seedFor(chunkX, chunkY, 1), this.chunkSize);
+  }
+
+  // returns the column of the opening between the given chunk and the chunk below it
+  int southOpening(int chunkX, int chunkY) {
+    return (int) Long.remainderUnsigned(this.seedFor(chunkX, chunkY, 2), this.chunkSize);
+  }
+
+  // returns whether you can go from the cell at the given world coordinates
+  // in the given direction (0 right, 1 down, 2 left, 3 up)
+  boolean isOpen(int x, int y, int direction) {
+    int chunkX = Math.floorDiv(x, this.chunkSize);
+    int chunkY = Math.floorDiv(y, this.chunkSize);
+    int localX = Math.floorMod(x, this.chunkSize);
+    int localY = Math.floorMod(y, this.chunkSize);
+    int last = this.chunkSize - 1;
+
+    // crossing into another chunk only depends on the border opening
+    if (direction == 0 && localX == last) {
+      return localY == this.eastOpening(chunkX, chunkY);
+    } else if (direction == 2 && localX == 0) {
+      return localY == this.eastOpening(chunkX - 1, chunkY);
+    } else if (direction == 1 && localY == last) {
+      return localX == this.southOpening(chunkX, chunkY);
+    } else if (direction == 3 && localY == 0) {
+      return localX == this.southOpening(chunkX, chunkY - 1);
+    }
+    return this.chunk(chunkX, chunkY).maze.isOpen(this.chunkSize * localY + localX, direction);
+  }
+}
@@ -0,0 +1,67 @@
+// Represents how many right and bottom walls are still standing in each block of
+// 2^level by 2^level cells of a rectangular maze, for every level from 1 up to
+// a single block. A zoomed out view draws one rectangle per block of the level
+// that matches its scale, so its cost depends on the window and not the maze
+class DensityPyramid {
+  int width;
+  int height;
+
+  // walls[level][by * levelWidth(level) + bx] for levels 1 and up, level 0 is unused
+  int[][] walls;
+
+  DensityPyramid(int width, int height) {
+    this.width = width;
+    this.height = height;
+
+    int levels = 1;
+    while ((1 << (levels - 1)) < Math.max(width, height)) {
+      levels++;
+    }
+    this.walls = new int[levels][];
+    for (int level = 1; level < levels; level++) {
+      this.walls[level] = new int[this.levelWidth(level) * this.levelHeight(level)];
+      for (int by = 0; by < this.levelHeight(level); by++) {
+        for (int bx = 0; bx < this.levelWidth(level); bx++) {
+          // every cell starts with both of its walls standing
+          this.walls[level][by * this.levelWidth(level) + bx] = 2 * this.cells(level, bx, by);
+        }
+      }
+    }
+  }
+
+  // returns the number of levels, the last of which is a single block
+  int levels() {
+    return this.walls.length;
+  }
+
+  // returns the number of blocks across the given level
+  int levelWidth(int level) {
+    return (this.width + (1 << level) - 1) >> level;
+  }
+
+  // returns the number of blocks down the given level
+  int levelHeight(int level) {
+    return (this.height + (1 << level) - 1) >> level;
+  }
+
+  // returns the number of cells of the maze inside the given block
+  int cells(int level, int bx, int by) {
+    int size = 1 << level;
+    int across = Math.min(this.width, (bx + 1) * size) - bx * size;
+    int down = Math.min(this.height, (by + 1) * size) - by * size;
+    return across * down;
+  }
+
+  // returns the fraction of walls still standing in the given block
+  double density(int level, int bx, int by) {
+    return this.walls[level][by * this.levelWidth(level) + bx]
+        / (2.0 * this.cells(level, bx, by));
+  }
+
+  // EFFECT: records that a wall of the cell at the given coordinates was removed
+  void removeWall(int x, int y) {
+    for (int level = 1; level < this.walls.length; level++) {
+      this.walls[level][(y >> level) * this.levelWidth(level) + (x >> level)]--;
+    }
+  }
+}
@@ -0,0 +1,184 @@
+import java.util.Arrays;
+
+// Represents a binary min-heap of cells keyed by int distances, kept in int arrays.
+// The position of every cell in the heap is remembered so its key can be lowered
+// in place instead of adding the cell a second time
+class IndexedMinHeap {
+  // heap[i] is a cell, ordered so no cell has a smaller key than its parent at (i - 1) / 2
+  int[] heap;
+  int size;
+  // the key of every cell ever added
+  int[] keys;
+  // the index of each cell in heap, or -1 if it is not in the heap
+  int[] positions;
+
+  IndexedMinHeap(int cells) {
+    this.heap = new int[cells];
+    this.keys = new int[cells];
+    this.positions = new int[cells];
+    Arrays.fill(this.positions, -1);
+  }
+
+  boolean isEmpty() {
+    return this.size == 0;
+  }
+
+  // returns whether the given cell is in the heap
+  boolean contains(int cell) {
+    return this.positions[cell] != -1;
+  }
+
+  // EFFECT: adds the given cell with the given key, or lowers its key if it is
+  // already in the heap with a larger one
+  void push(int cell, int key) {
+    if (this.positions[cell] == -1) {
+      this.heap[this.size] = cell;
+      this.positions[cell] = this.size;
+      this.size++;
+    } else if (key >= this.keys[cell]) {
+      return;
+    }
+    this.keys[cell] = key;
+    this.siftUp(this.positions[cell]);
+  }
+
+  // returns the cell with the smallest key
+  // EFFECT: removes that cell
+  int removeMin() {
+    int min = this.heap[0];
+    this.positions[min] = -1;
+    this.size--;
+    if (this.size > 0) {
+      this.heap[0] = this.heap[this.size];
+      this.positions[this.heap[0]] = 0;
+      this.siftDown(0);
+    }
+    return min;
+  }
+
+  // EFFECT: moves the cell at the given index up until its parent's key is no larger
+  void siftUp(int index) {
+    int cell = this.heap[index];
+    while (index > 0) {
+      int parent = (index - 1) / 2;
+      if (this.keys[this.heap[parent]] <= this.keys[cell]) {
+        break;
+      }
+      this.heap[index] = this.heap[parent];
+      this.positions[this.heap[index]] = index;
+      index = parent;
+    }
+    this.heap[index] = cell;
+    this.positions[cell] = index;
+  }
+
+  // EFFECT: moves the cell at the given index down until its children's keys are no smaller
+  void siftDown(int index) {
+    int cell = this.heap[index];
+    while (2 * index + 1 < this.size) {
+      int child = 2 * index + 1;
+      if (child + 1 < this.size
+          && this.keys[this.heap[child + 1]] < this.keys[this.heap[child]]) {
+        child++;
+      }
+      if (this.keys[cell] <= this.keys[this.heap[child]]) {
+        break;
+      }
+      this.heap[index] = this.heap[child];
+      this.positions[this.heap[index]] = index;
+      index = child;
+    }
+    this.heap[index] = cell;
+    this.positions[cell] = index;
+  }
+}
+
+// Represents the weights of the edges of a Graph as costs of the passages
+// of a rectangular flat maze, so a FlatDijkstra can walk the maze they were drawn for
+class PassageCosts implements IEdgeWeights {
+  int[] costs;
+
+  PassageCosts(Graph graph, int width, int height) {
+    this.costs = new int[width * height * 2];
+    for (Cell cell : graph.cells) {
+      for (Edge edge : cell.outEdges) {
+        this.costs[RectTopology.passage(width, edge)] = edge.weight;
+      }
+    }
+  }
+
+  public int weight(int edge) {
+    return this.costs[edge];
+  }
+}
+
+// represents Dijkstra's algorithm over a flat maze whose passages cost the given weights,
+// which finds the cheapest path where BFS finds the one with the fewest moves
+// once a braided maze has more than one
+class FlatDijkstra {
+  FlatMaze maze;
+  IEdgeWeights weights;
+  // the cost of the cheapest path found to each cell, or -1 if it has not been reached
+  int[] distances;
+  // the direction back towards the start from each reached cell
+  byte[] cameFrom;
+  int settled;
+
+  FlatDijkstra(FlatMaze maze, IEdgeWeights weights) {
+    this.maze = maze;
+    this.weights = weights;
+  }
+
+  // returns the cells on the cheapest path between the given cells in order,
+  // or an empty array if they are not connected
+  int[] path(int from, int to) {
+    ITopology topology = this.maze.topology;
+    this.distances = new int[topology.cellCount()];
+    Arrays.fill(this.distances, -1);
+    this.cameFrom = new byte[topology.cellCount()];
+    this.settled = 0;
+
+    IndexedMinHeap worklist = new IndexedMinHeap(topology.cellCount());
+    worklist.push(from, 0);
+    boolean found = false;
+    while (!worklist.isEmpty()) {
+      int next = worklist.removeMin();
+      this.distances[next] = worklist.keys[next];
+      this.settled++;
+      if (next == to) {
+        found = true;
+        break;
+      }
+      for (int direction = 0; direction < topology.directions(); direction++) {
+        int edge = this.maze.edge(next, direction);
+        if (edge < 0 || !this.maze.passages.get(edge)) {
+          continue;
+        }
+        int n = topology.neighbor(next, direction);
+        int distance = this.distances[next] + this.weights.weight(edge);
+        if (this.distances[n] == -1
+            && (!worklist.contains(n) || distance < worklist.keys[n])) {
+          worklist.push(n, distance);
+          this.cameFrom[n] = (byte) topology.opposite(direction);
+        }
+      }
+    }
+    if (!found) {
+      return new int[0];
+    }
+
+    int length = 1;
+    for (int cell = to; cell != from; length++) {
+      cell = topology.neighbor(cell, this.cameFrom[cell]);
+    }
+    int[] path = new int[length];
+    int cell = to;
+    for (int i = length - 1; i >= 0; i--) {
+      path[i] = cell;
+      if (i > 0) {
+        cell = topology.neighbor(cell, this.cameFrom[cell]);
+      }
+    }
+    return path;
+  }
+}
@@ -0,0 +1,255 @@
+import java.util.Arrays;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.stream.IntStream;
+
+// Represents the distance from one cell to every cell of a flat maze, found by a
+// breadth-first search that finishes one level before starting the next.
+// Each level either goes top-down, from every frontier cell to its unvisited
+// neighbors, or bottom-up, from every unvisited cell to any neighbor in the frontier,
+// whichever has fewer passages to look at. Top-down keeps the frontier as a list of
+// cells, bottom-up as a bitset, and both split large levels into parallel blocks
+class DistanceMap {
+  // go bottom-up once the frontier's passages are more than 1 / ALPHA of the
+  // unvisited cells' passages, and top-down again once the frontier is smaller
+  // than 1 / BETA of the cells
+  static final int ALPHA = 14;
+  static final int BETA = 24;
+
+  // frontiers with fewer cells than this are searched by one thread
+  static final int PARALLEL_FRONTIER = 1 << 12;
+
+  // roughly how many cells each parallel block covers
+  static final int BLOCK_CELLS = 1 << 16;
+
+  FlatMaze maze;
+  ITopology topology;
+
+  // distances[c] is the number of moves from the start to cell c, or -1 if it cannot be reached
+  int[] distances;
+  int maxDistance;
+  int reached;
+  int topDownLevels;
+  int bottomUpLevels;
+
+  // one bit per cell, set once the cell has a distance
+  AtomicLongArray visited;
+
+  // the frontier as a list of cells for top-down levels, and an array to build the next one
+  int[] frontier;
+  int frontierSize;
+  int[] spare;
+
+  // the frontier as a bitset for bottom-up levels
+  long[] frontierBits;
+
+  DistanceMap(FlatMaze maze) {
+    this.maze = maze;
+    this.topology = maze.topology;
+  }
+
+  // EFFECT: finds the distance from the given cell to every cell,
+  // reusing the distances of an earlier run
+  DistanceMap run(int from) {
+    int cells = this.topology.cellCount();
+    if (this.distances == null) {
+      this.distances = new int[cells];
+    }
+    Arrays.fill(this.distances, -1);
+    this.visited = new AtomicLongArray((cells + 63) / 64);
+    this.frontier = new int[16];
+    this.frontier[0] = from;
+    this.frontierSize = 1;
+    this.spare = new int[16];
+    this.frontierBits = null;
+    this.distances[from] = 0;
+    this.visited.set(from / 64, 1L << from);
+    this.reached = 1;
+    this.maxDistance = 0;
+    this.topDownLevels = 0;
+    this.bottomUpLevels = 0;
+
+    boolean bottomUp = false;
+    for (int level = 0; this.frontierSize > 0; level++) {
+      this.maxDistance = level;
+      long frontierPassages = (long) this.frontierSize * this.topology.directions();
+      long unvisitedPassages = (long) (cells - this.reached) * this.topology.directions();
+      if (!bottomUp && frontierPassages > unvisitedPassages / ALPHA) {
+        bottomUp = true;
+        this.frontierToBits();
+      } else if (bottomUp && this.frontierSize < cells / BETA) {
+        bottomUp = false;
+        this.frontierToList();
+      }
+      if (bottomUp) {
+        this.bottomUpStep(level);
+        this.bottomUpLevels++;
+      } else {
+        this.topDownStep(level);
+        this.topDownLevels++;
+      }
+      this.reached += this.frontierSize;
+    }
+    this.frontier = null;
+    this.spare = null;
+    this.frontierBits = null;
+    this.visited = null;
+    return this;
+  }
+
+  // returns a cell at the greatest distance from the start
+  int farthest() {
+    for (int cell = 0; cell < this.distances.length; cell++) {
+      if (this.distances[cell] == this.maxDistance) {
+        return cell;
+      }
+    }
+    return -1;
+  }
+
+  // EFFECT: marks the given cell as visited, returns whether it was not visited before
+  boolean claim(int cell) {
+    int word = cell / 64;
+    long bit = 1L << cell;
+    long old = this.visited.get(word);
+    while ((old & bit) == 0) {
+      if (this.visited.compareAndSet(word, old, old | bit)) {
+        return true;
+      }
+      old = this.visited.get(word);
+    }
+    return false;
+  }
+
+  // EFFECT: gives every unvisited neighbor of the frontier cells the next distance
+  // and makes those neighbors the frontier
+  void topDownStep(int level) {
+    if (this.frontierSize < 2 * PARALLEL_FRONTIER) {
+      this.sequentialTopDownStep(level);
+      return;
+    }
+    int chunks = this.frontierSize / PARALLEL_FRONTIER;
+    int chunkSize = (this.frontierSize + chunks - 1) / chunks;
+    IntQueue[] found = new IntQueue[chunks];
+    IntStream range = IntStream.range(0, chunks);
+    (chunks > 1 ? range.parallel() : range).forEach(chunk -> {
+      IntQueue next = new IntQueue();
+      int end = Math.min(this.frontierSize, (chunk + 1) * chunkSize);
+      for (int i = chunk * chunkSize; i < end; i++) {
+        int cell = this.frontier[i];
+        int cellClass = this.topology.cellClass(cell);
+        for (int direction = 0; direction < this.topology.directions(); direction++) {
+          int n = this.maze.openNeighbor(cell, direction, cellClass);
+          if (n >= 0 && this.distances[n] == -1 && this.claim(n)) {
+            this.distances[n] = level + 1;
+            next.add(n);
+          }
+        }
+      }
+      found[chunk] = next;
+    });
+
+    int size = 0;
+    for (IntQueue next : found) {
+      size += next.size;
+    }
+    int[] frontier = size <= this.frontier.length ? this.frontier : new int[size];
+    int filled = 0;
+    for (IntQueue next : found) {
+      while (!next.isEmpty()) {
+        frontier[filled++] = next.remove();
+      }
+    }
+    this.frontier = frontier;
+    this.frontierSize = size;
+  }
+
+  // EFFECT: does a top-down step on this thread, which is most of the levels of a
+  // perfect maze. With no other thread to race, a cell is claimed with plain reads and
+  // writes of its bit, and the next frontier goes straight into the spare array
+  void sequentialTopDownStep(int level) {
+    int directions = this.topology.directions();
+    int size = 0;
+    for (int i = 0; i < this.frontierSize; i++) {
+      int cell = this.frontier[i];
+      int cellClass = this.topology.cellClass(cell);
+      for (int direction = 0; direction < directions; direction++) {
+        int n = this.maze.openNeighbor(cell, direction, cellClass);
+        if (n >= 0 && this.distances[n] == -1) {
+          this.distances[n] = level + 1;
+          this.visited.setPlain(n / 64, this.visited.getPlain(n / 64) | (1L << n));
+          if (size == this.spare.length) {
+            this.spare = Arrays.copyOf(this.spare, 2 * size);
+          }
+          this.spare[size++] = n;
+        }
+      }
+    }
+    int[] swap = this.frontier;
+    this.frontier = this.spare;
+    this.spare = swap;
+    this.frontierSize = size;
+  }
+
+  // EFFECT: gives every unvisited cell with a neighbor in the frontier the next distance
+  // and makes those cells the frontier. Each block owns whole words of the bitsets
+  void bottomUpStep(int level) {
+    int cells = this.topology.cellCount();
+    int words = (cells + 63) / 64;
+    int blockWords = Math.max(1, BLOCK_CELLS / 64);
+    int blocks = (words + blockWords - 1) / blockWords;
+    long[] nextBits = new long[words];
+    int[] counts = new int[blocks];
+    IntStream.range(0, blocks).parallel().forEach(block -> {
+      int count = 0;
+      for (int word = block * blockWords; word < Math.min(words, (block + 1) * blockWords);
+          word++) {
+        long unvisited = ~this.visited.get(word);
+        long added = 0;
+        for (long bits = unvisited; bits != 0; bits &= bits - 1) {
+          int cell = word * 64 + Long.numberOfTrailingZeros(bits);
+          if (cell >= cells) {
+            break;
+          }
+          int cellClass = this.topology.cellClass(cell);
+          for (int direction = 0; direction < this.topology.directions(); direction++) {
+            int n = this.maze.openNeighbor(cell, direction, cellClass);
+            if (n >= 0 && (this.frontierBits[n / 64] & (1L << n)) != 0) {
+              this.distances[cell] = level + 1;
+              added |= 1L << cell;
+              count++;
+              break;
+            }
+          }
+        }
+        if (added != 0) {
+          nextBits[word] = added;
+          this.visited.set(word, ~unvisited | added);
+        }
+      }
+      counts[block] = count;
+    });
+    this.frontierBits = nextBits;
+    this.frontierSize = IntStream.of(counts).sum();
+  }
+
+  // EFFECT: turns the frontier list into a bitset
+  void frontierToBits() {
+    this.frontierBits = new long[(this.topology.cellCount() + 63) / 64];
+    for (int i = 0; i < this.frontierSize; i++) {
+      int cell = this.frontier[i];
+      this.frontierBits[cell / 64] |= 1L << cell;
+    }
+  }
+
+  // EFFECT: turns the frontier bitset into a list
+  void frontierToList() {
+    this.frontier = new int[Math.max(16, this.frontierSize)];
+    int filled = 0;
+    for (int word = 0; word < this.frontierBits.length; word++) {
+      for (long bits = this.frontierBits[word]; bits != 0; bits &= bits - 1) {
+        this.frontier[filled++] = word * 64 + Long.numberOfTrailingZeros(bits);
+      }
+    }
+    this.frontierBits = null;
+  }
+}
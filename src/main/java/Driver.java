@@ -3,7 +3,15 @@ class Driver {
 
     // displays the maze for the user
     public static void main(String args[]) {
-        MazeWorld one = new MazeWorld(20, 15, 1);
+        if (args.length > 0 && args[0].equals("infinite")) {
+            InfiniteMazeWorld endless = new InfiniteMazeWorld(20, 1);
+            endless.bigBang(InfiniteMazeWorld.SCREEN_WIDTH,
+                InfiniteMazeWorld.SCREEN_HEIGHT + 100, 0.05);
+            return;
+        }
+        // a number starts in braid mode with that fraction of the left out edges as loops
+        double braidFraction = args.length > 0 ? Double.parseDouble(args[0]) : 0;
+        MazeWorld one = new MazeWorld(20, 15, 1, braidFraction);
         one.bigBang(one.SCREEN_WIDTH, one.screenHeight + 100, 0.0005);
     }
 }
\ No newline at end of file
@@ -0,0 +1,376 @@
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.Random;
+
+// Represents a maze over any topology as a bitset of open passages,
+// where the passage leaving cell c in forward direction d has index
+// c * forwardDirections() + d
+class FlatMaze {
+  ITopology topology;
+  BitSet passages;
+
+  FlatMaze(ITopology topology) {
+    this.topology = topology;
+    this.passages = new BitSet(topology.cellCount() * topology.forwardDirections());
+  }
+
+  FlatMaze(ITopology topology, BitSet passages) {
+    this.topology = topology;
+    this.passages = passages;
+  }
+
+  // builds a rectangular flat maze from the edges chosen by a Kruskal
+  static FlatMaze fromEdges(ArrayList<Edge> edgesInTree, int width, int height) {
+    FlatMaze maze = new FlatMaze(new RectTopology(width, height));
+    for (Edge edge : edgesInTree) {
+      maze.openEdge(edge);
+    }
+    return maze;
+  }
+
+  // EFFECT: opens the passage between the two cells of the given Edge
+  // of a rectangular maze
+  void openEdge(Edge edge) {
+    this.passages.set(this.indexOf(edge));
+  }
+
+  // returns the index of the passage between the two cells of the given Edge
+  // of a rectangular maze
+  int indexOf(Edge edge) {
+    return RectTopology.passage(((GridTopology) this.topology).width, edge);
+  }
+
+  // returns the index of the passage leaving the given cell in the given direction,
+  // or -1 if the cell has no neighbor that way
+  int edge(int cell, int direction) {
+    int forward = this.topology.forwardDirections();
+    if (direction < forward) {
+      return this.topology.neighbor(cell, direction) < 0 ? -1 : cell * forward + direction;
+    }
+    int other = this.topology.neighbor(cell, direction);
+    if (other < 0) {
+      return -1;
+    }
+    return other * forward + direction - forward;
+  }
+
+  // returns whether you can go from the given cell in the given direction
+  boolean isOpen(int cell, int direction) {
+    int edge = this.edge(cell, direction);
+    return edge >= 0 && this.passages.get(edge);
+  }
+
+  // returns the cell you reach from the given cell, whose class is given, in the given
+  // direction, or -1 if the passage is closed or there is no neighbor that way
+  int openNeighbor(int cell, int direction, int cellClass) {
+    int next = this.topology.neighbor(cell, direction, cellClass);
+    if (next < 0) {
+      return -1;
+    }
+    int forward = this.topology.forwardDirections();
+    int edge = direction < forward
+        ? cell * forward + direction
+        : next * forward + direction - forward;
+    return this.passages.get(edge) ? next : -1;
+  }
+
+  // EFFECT: opens or closes the passage leaving the given cell in the given direction
+  void setOpen(int cell, int direction, boolean open) {
+    int edge = this.edge(cell, direction);
+    if (edge < 0) {
+      throw new IllegalArgumentException("No neighbor in direction " + direction);
+    }
+    this.passages.set(edge, open);
+  }
+
+  // returns the closed passages it opened, in order of their index
+  // EFFECT: opens each closed passage with the given probability, so that a perfect maze
+  // gets loops and more than one way through
+  IntQueue braid(double fraction, Random rand) {
+    IntQueue opened = new IntQueue();
+    if (fraction <= 0) {
+      return opened;
+    }
+    int forward = this.topology.forwardDirections();
+    for (int cell = 0; cell < this.topology.cellCount(); cell++) {
+      for (int direction = 0; direction < forward; direction++) {
+        int edge = cell * forward + direction;
+        if (this.topology.neighbor(cell, direction) >= 0 && !this.passages.get(edge)
+            && rand.nextDouble() < fraction) {
+          this.passages.set(edge);
+          opened.add(edge);
+        }
+      }
+    }
+    return opened;
+  }
+
+  // returns the number of open passages in this maze
+  int passageCount() {
+    return this.passages.cardinality();
+  }
+}
+
+// Represents a cost for every passage of a flat maze
+interface IEdgeWeights {
+  // returns the weight of the passage with the given index
+  int weight(int edge);
+}
+
+// represents a class to run Kruskal's algorithm over a topology without
+// any per-cell objects. Weights are hashed from the seed and the edge index,
+// so edges are visited one weight at a time in order of their index
+// instead of being sorted into a worklist
+class FlatKruskal implements IEdgeWeights {
+  ITopology topology;
+  FlatMaze maze;
+  long seed;
+  int horizontalPreference;
+  // the index in a larger maze of this maze's passage 0, so that a band of a BandedMaze
+  // gets the same weights as the same passages of the whole maze
+  long edgeOffset;
+
+  // the representative of each cell, or minus the size of its set for a representative
+  int[] representatives;
+  int edgesInTree;
+
+  // the weight being worked on and the position in that weight's pass
+  int currentWeight;
+  int currentEdgeCount;
+
+  FlatKruskal(ITopology topology, long seed, int horizontalPreference) {
+    this(topology, seed, horizontalPreference, 0);
+  }
+
+  FlatKruskal(ITopology topology, long seed, int horizontalPreference, long edgeOffset) {
+    this.topology = topology;
+    this.edgeOffset = edgeOffset;
+    this.maze = new FlatMaze(topology);
+    this.seed = seed;
+    this.horizontalPreference = horizontalPreference;
+
+    this.representatives = new int[topology.cellCount()];
+    Arrays.fill(this.representatives, -1);
+    this.edgesInTree = 0;
+    this.currentWeight = 1;
+    this.currentEdgeCount = 0;
+  }
+
+  // returns the weight of the given edge. Direction 0 is the horizontal axis
+  // in every topology and gets weights 1 to 10, the others are scaled
+  // by horizontalPreference like the vertical edges of MazeWorld
+  public int weight(int edge) {
+    return weight(this.seed, this.horizontalPreference,
+        this.edgeOffset + edge, edge % this.topology.forwardDirections() == 0);
+  }
+
+  // returns the weight of the passage with the given index in a maze with the given seed
+  static int weight(long seed, int horizontalPreference, long edge, boolean horizontal) {
+    int range = horizontal ? 10 : 10 * horizontalPreference;
+    return 1 + (int) Long.remainderUnsigned(mix(seed + edge * 0x9E3779B97F4A7C15L), range);
+  }
+
+  // returns the largest weight any edge can have
+  int maxWeight() {
+    return this.topology.forwardDirections() > 1 ? 10 * this.horizontalPreference : 10;
+  }
+
+  // scrambles the bits of the given value (the SplitMix64 finalizer)
+  static long mix(long z) {
+    z = (z ^ (z >>> 30)) * 0xBF58476D1CE4E5B9L;
+    z = (z ^ (z >>> 27)) * 0x94D049BB133111EBL;
+    return z ^ (z >>> 31);
+  }
+
+  // finds the representative of a given cell, halving the path as it goes
+  int findRepresentative(int cell) {
+    while (this.representatives[cell] >= 0) {
+      int parent = this.representatives[cell];
+      if (this.representatives[parent] >= 0) {
+        this.representatives[cell] = this.representatives[parent];
+      }
+      cell = this.representatives[cell];
+    }
+    return cell;
+  }
+
+  // unions two representatives, hanging the smaller set under the larger
+  void unionRepresentative(int a, int b) {
+    if (this.representatives[a] > this.representatives[b]) {
+      int swap = a;
+      a = b;
+      b = swap;
+    }
+    this.representatives[a] += this.representatives[b];
+    this.representatives[b] = a;
+  }
+
+  // returns whether the spanning tree is complete
+  boolean isDone() {
+    return this.edgesInTree >= this.topology.cellCount() - 1
+        || this.currentWeight > this.maxWeight();
+  }
+
+  // EFFECT: adds the given edge to the tree if it has the current weight
+  // and joins two different sets
+  void tryEdge(int edge) {
+    if (this.weight(edge) != this.currentWeight) {
+      return;
+    }
+    int forward = this.topology.forwardDirections();
+    int from = edge / forward;
+    int to = this.topology.neighbor(from, edge % forward);
+    if (to < 0) {
+      return;
+    }
+    int fromRepresentative = this.findRepresentative(from);
+    int toRepresentative = this.findRepresentative(to);
+    if (fromRepresentative != toRepresentative) {
+      this.unionRepresentative(fromRepresentative, toRepresentative);
+      this.maze.passages.set(edge);
+      this.edgesInTree++;
+    }
+  }
+
+  // runs Kruskal's algorithm on this topology
+  FlatMaze runKruskalImmediately() {
+    this.runKruskal(Long.MAX_VALUE);
+    return this.maze;
+  }
+
+  // runs Kruskal's algorithm for at most the given number of edge indices,
+  // returns whether there is more work left
+  boolean runKruskal(long steps) {
+    int slots = this.topology.cellCount() * this.topology.forwardDirections();
+    while (steps > 0 && !this.isDone()) {
+      int end = this.currentEdgeCount + (int) Math.min(slots - this.currentEdgeCount, steps);
+      steps -= end - this.currentEdgeCount;
+      for (; this.currentEdgeCount < end && !this.isDone(); this.currentEdgeCount++) {
+        this.tryEdge(this.currentEdgeCount);
+      }
+      if (this.currentEdgeCount == slots) {
+        this.currentWeight++;
+        this.currentEdgeCount = 0;
+      }
+    }
+    return !this.isDone();
+  }
+
+  // runs Kruskal's algorithm like runKruskal(long), offering the given writer a checkpoint
+  // after every interval edge indices, which it skips while still writing the last one,
+  // and handing it a last checkpoint once the steps are done
+  boolean runKruskal(long steps, long interval, CheckpointWriter writer) {
+    if (interval <= 0) {
+      throw new IllegalArgumentException("Checkpoint interval must be positive");
+    }
+    boolean more = true;
+    for (long done = 0; more && done < steps; done += interval) {
+      more = this.runKruskal(Math.min(interval, steps - done));
+      writer.offer(this);
+    }
+    writer.awaitIdle();
+    writer.offer(this);
+    return more;
+  }
+}
+
+// Represents a growable queue of ints
+class IntQueue {
+  int[] contents;
+  int head;
+  int size;
+
+  IntQueue() {
+    this.contents = new int[16];
+  }
+
+  boolean isEmpty() {
+    return this.size == 0;
+  }
+
+  // EFFECT: adds the item to the back of the queue
+  void add(int item) {
+    if (this.size == this.contents.length) {
+      int[] bigger = new int[this.contents.length * 2];
+      for (int i = 0; i < this.size; i++) {
+        bigger[i] = this.contents[(this.head + i) % this.contents.length];
+      }
+      this.contents = bigger;
+      this.head = 0;
+    }
+    this.contents[(this.head + this.size) % this.contents.length] = item;
+    this.size++;
+  }
+
+  // returns the item at the front of the queue
+  // EFFECT: removes that item
+  int remove() {
+    int item = this.contents[this.head];
+    this.head = (this.head + 1) % this.contents.length;
+    this.size--;
+    return item;
+  }
+}
+
+// represents a breadth-first search over a flat maze, which remembers
+// the direction each cell was reached from in a byte per cell
+class FlatSolver {
+  static final byte UNSEEN = 0;
+  static final byte START = -1;
+
+  FlatMaze maze;
+  byte[] cameFrom;
+  int settled;
+
+  FlatSolver(FlatMaze maze) {
+    this.maze = maze;
+  }
+
+  // returns the cells on the path between the given cells in order,
+  // or an empty array if they are not connected
+  int[] path(int from, int to) {
+    ITopology topology = this.maze.topology;
+    this.cameFrom = new byte[topology.cellCount()];
+    this.settled = 0;
+
+    IntQueue worklist = new IntQueue();
+    worklist.add(from);
+    this.cameFrom[from] = START;
+    boolean found = false;
+    while (!worklist.isEmpty()) {
+      int next = worklist.remove();
+      this.settled++;
+      if (next == to) {
+        found = true;
+        break;
+      }
+      int cellClass = topology.cellClass(next);
+      for (int direction = 0; direction < topology.directions(); direction++) {
+        int n = this.maze.openNeighbor(next, direction, cellClass);
+        if (n >= 0 && this.cameFrom[n] == UNSEEN) {
+          // remember the way back, stored off by one so 0 means unseen
+          this.cameFrom[n] = (byte) (topology.opposite(direction) + 1);
+          worklist.add(n);
+        }
+      }
+    }
+    if (!found) {
+      return new int[0];
+    }
+
+    int length = 1;
+    for (int cell = to; cell != from; length++) {
+      cell = topology.neighbor(cell, this.cameFrom[cell] - 1);
+    }
+    int[] path = new int[length];
+    int cell = to;
+    for (int i = length - 1; i >= 0; i--) {
+      path[i] = cell;
+      if (i > 0) {
+        cell = topology.neighbor(cell, this.cameFrom[cell] - 1);
+      }
+    }
+    return path;
+  }
+}
@@ -0,0 +1,161 @@
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+
+// Represents the order a Kruskal's algorithm ran in, as one bit per worklist edge
+// it looked at: set if the edge was accepted into the tree, clear if it was rejected.
+// Together with the worklist (or the seed that built it) this is enough to replay
+// the generation of a maze
+class GenerationLog {
+  static final int MAGIC = 0x4D5A4C47;
+
+  // how many steps apart the counts of accepted edges are remembered
+  static final int CHECKPOINT_INTERVAL = 4096;
+
+  long[] words;
+  int steps;
+  int accepted;
+
+  // checkpoints[k] is the number of edges accepted before step k * CHECKPOINT_INTERVAL
+  int[] checkpoints;
+  int checkpointCount;
+
+  GenerationLog() {
+    this.words = new long[16];
+    this.checkpoints = new int[4];
+  }
+
+  // EFFECT: records whether the edge at the given step was accepted.
+  // Steps must be recorded in order
+  void record(int step, boolean accepted) {
+    if (step != this.steps) {
+      throw new IllegalStateException("Expected step " + this.steps + " but got " + step);
+    }
+    if (step % CHECKPOINT_INTERVAL == 0) {
+      if (this.checkpointCount == this.checkpoints.length) {
+        this.checkpoints = Arrays.copyOf(this.checkpoints, this.checkpointCount * 2);
+      }
+      this.checkpoints[this.checkpointCount++] = this.accepted;
+    }
+    if (step / 64 == this.words.length) {
+      this.words = Arrays.copyOf(this.words, this.words.length * 2);
+    }
+    if (accepted) {
+      this.words[step / 64] |= 1L << step;
+      this.accepted++;
+    }
+    this.steps++;
+  }
+
+  // returns whether the edge at the given step was accepted
+  boolean wasAccepted(int step) {
+    return (this.words[step / 64] & (1L << step)) != 0;
+  }
+
+  // returns how many edges were accepted before the given step,
+  // counting on from the nearest checkpoint
+  int acceptedBefore(int step) {
+    if (step >= this.steps) {
+      return this.accepted;
+    }
+    int checkpoint = step / CHECKPOINT_INTERVAL;
+    int count = this.checkpoints[checkpoint];
+    int word = checkpoint * CHECKPOINT_INTERVAL / 64;
+    for (; word < step / 64; word++) {
+      count += Long.bitCount(this.words[word]);
+    }
+    if (step % 64 != 0) {
+      count += Long.bitCount(this.words[word] & ((1L << step) - 1));
+    }
+    return count;
+  }
+
+  // returns the first accepted step at or after the given step, or -1 if there is none
+  int nextAccepted(int step) {
+    int word = step / 64;
+    if (word >= this.words.length) {
+      return -1;
+    }
+    long bits = this.words[word] & (-1L << step);
+    while (bits == 0) {
+      word++;
+      if (word >= this.words.length) {
+        return -1;
+      }
+      bits = this.words[word];
+    }
+    int found = word * 64 + Long.numberOfTrailingZeros(bits);
+    return found < this.steps ? found : -1;
+  }
+
+  // EFFECT: writes this log to the given stream
+  void writeTo(DataOutputStream out) throws IOException {
+    out.writeInt(MAGIC);
+    out.writeInt(this.steps);
+    for (int i = 0; i < (this.steps + 63) / 64; i++) {
+      out.writeLong(this.words[i]);
+    }
+  }
+
+  // reads a log written by writeTo, rebuilding its checkpoints
+  static GenerationLog readFrom(DataInputStream in) throws IOException {
+    if (in.readInt() != MAGIC) {
+      throw new IOException("Not a generation log");
+    }
+    int steps = in.readInt();
+    GenerationLog log = new GenerationLog();
+    for (int word = 0; word < (steps + 63) / 64; word++) {
+      long bits = in.readLong();
+      for (int bit = 0; bit < 64 && word * 64 + bit < steps; bit++) {
+        log.record(word * 64 + bit, (bits & (1L << bit)) != 0);
+      }
+    }
+    return log;
+  }
+}
+
+// Represents a player for a GenerationLog, which keeps the edges accepted
+// before the current step in edgesInTree
+class GenerationReplay {
+  GenerationLog log;
+  ArrayList<Edge> worklist;
+  ArrayList<Edge> edgesInTree;
+  int currentStep;
+
+  GenerationReplay(GenerationLog log, ArrayList<Edge> worklist) {
+    this.log = log;
+    this.worklist = worklist;
+    this.edgesInTree = new ArrayList<Edge>();
+    this.currentStep = 0;
+  }
+
+  // returns whether every step of the log has been replayed
+  boolean isDone() {
+    return this.currentStep >= this.log.steps;
+  }
+
+  // EFFECT: replays up to the given number of steps,
+  // returns whether there are steps left to replay
+  boolean advance(int steps) {
+    this.seek((int) Math.min(this.log.steps, (long) this.currentStep + steps));
+    return !this.isDone();
+  }
+
+  // EFFECT: moves the replay to the given step, forwards or backwards
+  void seek(int step) {
+    step = Math.max(0, Math.min(this.log.steps, step));
+    if (step < this.currentStep) {
+      int keep = this.log.acceptedBefore(step);
+      this.edgesInTree.subList(keep, this.edgesInTree.size()).clear();
+    } else {
+      for (int next = this.log.nextAccepted(this.currentStep);
+          next != -1 && next < step;
+          next = this.log.nextAccepted(next + 1)) {
+        this.edgesInTree.add(this.worklist.get(next));
+      }
+    }
+    this.currentStep = step;
+  }
+}
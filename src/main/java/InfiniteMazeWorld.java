@@ -0,0 +1,116 @@
+import javalib.impworld.*;
+import java.awt.Color;
+import java.util.Random;
+import javalib.worldimages.*;
+
+// represents a world for walking through an endless ChunkedMaze,
+// where the view follows the player and only the chunks in view are generated
+class InfiniteMazeWorld extends World {
+
+  static int SCREEN_WIDTH = 800;
+  static int SCREEN_HEIGHT = 800;
+  static int CHUNK_SIZE = 16;
+
+  int cellSize;
+  ChunkedMaze maze;
+
+  // world coordinates of the player, the top left cell is 0, 0
+  int playerX;
+  int playerY;
+  int playerMoves;
+
+  InfiniteMazeWorld(int cellSize, int horizontalPreference) {
+    this(cellSize, horizontalPreference, new Random().nextLong());
+  }
+
+  // constructor for testing
+  InfiniteMazeWorld(int cellSize, int horizontalPreference, long worldSeed) {
+    this.cellSize = cellSize;
+    int chunksInView = (SCREEN_WIDTH / cellSize / CHUNK_SIZE + 2)
+        * (SCREEN_HEIGHT / cellSize / CHUNK_SIZE + 2);
+    // room for a few screens of chunks so walking back and forth does not regenerate them
+    this.maze = new ChunkedMaze(worldSeed, CHUNK_SIZE, horizontalPreference, 4 * chunksInView);
+    this.playerX = 0;
+    this.playerY = 0;
+    this.playerMoves = 0;
+  }
+
+  // displays the part of the maze around the player
+  public WorldScene makeScene() {
+    WorldScene toReturn = new WorldScene(SCREEN_WIDTH, SCREEN_HEIGHT + 100);
+
+    int columns = SCREEN_WIDTH / this.cellSize;
+    int rows = SCREEN_HEIGHT / this.cellSize;
+    int left = this.playerX - columns / 2;
+    int top = this.playerY - rows / 2;
+
+    // places cell walls, only looking at the chunks in view
+    for (int y = top; y < top + rows; y++) {
+      for (int x = left; x < left + columns; x++) {
+        int centerX = (x - left) * this.cellSize + this.cellSize / 2;
+        int centerY = (y - top) * this.cellSize + this.cellSize / 2;
+        if (x == 0 && y == 0) {
+          toReturn.placeImageXY(new RectangleImage(7 * this.cellSize / 8,
+              7 * this.cellSize / 8, OutlineMode.SOLID, Color.green), centerX, centerY);
+        }
+        if (!this.maze.isOpen(x, y, 0)) {
+          toReturn.placeImageXY(new RectangleImage(1, this.cellSize + 1,
+              OutlineMode.OUTLINE, Color.black), centerX + this.cellSize / 2, centerY);
+        }
+        if (!this.maze.isOpen(x, y, 1)) {
+          toReturn.placeImageXY(new RectangleImage(this.cellSize + 1, 1,
+              OutlineMode.OUTLINE, Color.black), centerX, centerY + this.cellSize / 2);
+        }
+      }
+    }
+
+    // displays the player
+    toReturn.placeImageXY(new RectangleImage(5 * this.cellSize / 8, 5 * this.cellSize / 8,
+        OutlineMode.SOLID, Color.black),
+        (this.playerX - left) * this.cellSize + this.cellSize / 2,
+        (this.playerY - top) * this.cellSize + this.cellSize / 2);
+
+    // outline around the window
+    toReturn.placeImageXY(new RectangleImage(SCREEN_WIDTH, SCREEN_HEIGHT,
+        OutlineMode.OUTLINE, Color.black),
+        SCREEN_WIDTH / 2, SCREEN_HEIGHT / 2);
+
+    // displays position and chunk cache statistics
+    toReturn.placeImageXY(new TextImage("(" + this.playerX + ", " + this.playerY + ")  "
+        + "chunks: " + this.maze.cache.size() + " cached, "
+        + this.maze.cache.misses + " generated, "
+        + this.maze.cache.evictions + " evicted", 20, Color.black),
+        SCREEN_WIDTH / 2, SCREEN_HEIGHT + 50);
+
+    return toReturn;
+  }
+
+  // handles user key input
+  public void onKeyEvent(String key) {
+    int direction;
+    if (key.equals("right")) {
+      direction = 0;
+    } else if (key.equals("down")) {
+      direction = 1;
+    } else if (key.equals("left")) {
+      direction = 2;
+    } else if (key.equals("up")) {
+      direction = 3;
+    } else {
+      return;
+    }
+
+    if (this.maze.isOpen(this.playerX, this.playerY, direction)) {
+      if (direction == 0) {
+        this.playerX++;
+      } else if (direction == 1) {
+        this.playerY++;
+      } else if (direction == 2) {
+        this.playerX--;
+      } else {
+        this.playerY--;
+      }
+      this.playerMoves++;
+    }
+  }
+}
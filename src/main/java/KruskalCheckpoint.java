@@ -0,0 +1,289 @@
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.util.BitSet;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+// Represents a copy of everything a FlatKruskal needs to carry on from where it was:
+// its union-find, its position in the pass over each weight and the passages
+// accepted so far. The topology, seed and sizes are kept to check it is resumed by
+// a matching FlatKruskal
+class KruskalCheckpoint {
+  static final int MAGIC = 0x4D5A4B43;
+  // the layout of the file, raised whenever a field is added or changed
+  static final int VERSION = 2;
+
+  // the class and grid of the topology, with the cell count as width for other topologies
+  String topologyName;
+  int width;
+  int height;
+  int levels;
+  int cellCount;
+  int forwardDirections;
+  long seed;
+  int horizontalPreference;
+  long edgeOffset;
+
+  int[] representatives;
+  int edgesInTree;
+  int currentWeight;
+  int currentEdgeCount;
+  long[] passages;
+
+  KruskalCheckpoint(FlatKruskal kruskal) {
+    this.copyFrom(kruskal);
+  }
+
+  KruskalCheckpoint() {
+  }
+
+  // EFFECT: copies the state of the given FlatKruskal into this checkpoint,
+  // reusing the union-find array of the last copy when it is the same size
+  void copyFrom(FlatKruskal kruskal) {
+    this.topologyName = kruskal.topology.getClass().getName();
+    int[] grid = grid(kruskal.topology);
+    this.width = grid[0];
+    this.height = grid[1];
+    this.levels = grid[2];
+    this.cellCount = kruskal.topology.cellCount();
+    this.forwardDirections = kruskal.topology.forwardDirections();
+    this.seed = kruskal.seed;
+    this.horizontalPreference = kruskal.horizontalPreference;
+    this.edgeOffset = kruskal.edgeOffset;
+    if (this.representatives == null
+        || this.representatives.length != kruskal.representatives.length) {
+      this.representatives = new int[kruskal.representatives.length];
+    }
+    System.arraycopy(kruskal.representatives, 0, this.representatives, 0,
+        this.representatives.length);
+    this.edgesInTree = kruskal.edgesInTree;
+    this.currentWeight = kruskal.currentWeight;
+    this.currentEdgeCount = kruskal.currentEdgeCount;
+    this.passages = kruskal.maze.passages.toLongArray();
+  }
+
+  // returns the width, height and levels of the given topology
+  static int[] grid(ITopology topology) {
+    if (topology instanceof GridTopology) {
+      GridTopology grid = (GridTopology) topology;
+      return new int[] {grid.width, grid.height, grid.levels};
+    }
+    return new int[] {topology.cellCount(), 1, 1};
+  }
+
+  // EFFECT: puts the given FlatKruskal back in the state this checkpoint was taken in
+  void restore(FlatKruskal kruskal) {
+    int[] grid = grid(kruskal.topology);
+    if (!kruskal.topology.getClass().getName().equals(this.topologyName)
+        || grid[0] != this.width || grid[1] != this.height || grid[2] != this.levels
+        || kruskal.topology.cellCount() != this.cellCount
+        || kruskal.topology.forwardDirections() != this.forwardDirections
+        || kruskal.seed != this.seed
+        || kruskal.horizontalPreference != this.horizontalPreference
+        || kruskal.edgeOffset != this.edgeOffset) {
+      throw new IllegalArgumentException("Checkpoint was taken from a different maze");
+    }
+    kruskal.representatives = this.representatives.clone();
+    kruskal.edgesInTree = this.edgesInTree;
+    kruskal.currentWeight = this.currentWeight;
+    kruskal.currentEdgeCount = this.currentEdgeCount;
+    kruskal.maze.passages = BitSet.valueOf(this.passages);
+  }
+
+  // EFFECT: writes this checkpoint to the given stream
+  void writeTo(DataOutputStream out) throws IOException {
+    out.writeInt(MAGIC);
+    out.writeInt(VERSION);
+    out.writeUTF(this.topologyName);
+    out.writeInt(this.width);
+    out.writeInt(this.height);
+    out.writeInt(this.levels);
+    out.writeInt(this.cellCount);
+    out.writeInt(this.forwardDirections);
+    out.writeLong(this.seed);
+    out.writeInt(this.horizontalPreference);
+    out.writeLong(this.edgeOffset);
+    out.writeInt(this.edgesInTree);
+    out.writeInt(this.currentWeight);
+    out.writeInt(this.currentEdgeCount);
+    for (int representative : this.representatives) {
+      out.writeInt(representative);
+    }
+    out.writeInt(this.passages.length);
+    for (long word : this.passages) {
+      out.writeLong(word);
+    }
+  }
+
+  // reads a checkpoint written by writeTo
+  static KruskalCheckpoint readFrom(DataInputStream in) throws IOException {
+    if (in.readInt() != MAGIC) {
+      throw new IOException("Not a Kruskal checkpoint");
+    }
+    int version = in.readInt();
+    if (version != VERSION) {
+      throw new IOException("Checkpoint format version " + version + ", expected " + VERSION);
+    }
+    KruskalCheckpoint checkpoint = new KruskalCheckpoint();
+    checkpoint.topologyName = in.readUTF();
+    checkpoint.width = in.readInt();
+    checkpoint.height = in.readInt();
+    checkpoint.levels = in.readInt();
+    checkpoint.cellCount = in.readInt();
+    checkpoint.forwardDirections = in.readInt();
+    checkpoint.seed = in.readLong();
+    checkpoint.horizontalPreference = in.readInt();
+    checkpoint.edgeOffset = in.readLong();
+    checkpoint.edgesInTree = in.readInt();
+    checkpoint.currentWeight = in.readInt();
+    checkpoint.currentEdgeCount = in.readInt();
+    checkpoint.representatives = new int[checkpoint.cellCount];
+    for (int cell = 0; cell < checkpoint.cellCount; cell++) {
+      checkpoint.representatives[cell] = in.readInt();
+    }
+    checkpoint.passages = new long[in.readInt()];
+    for (int word = 0; word < checkpoint.passages.length; word++) {
+      checkpoint.passages[word] = in.readLong();
+    }
+    return checkpoint;
+  }
+
+  // reads the checkpoint in the given file
+  static KruskalCheckpoint read(Path file) throws IOException {
+    try (DataInputStream in = new DataInputStream(
+        new BufferedInputStream(Files.newInputStream(file), 1 << 16))) {
+      return readFrom(in);
+    }
+  }
+
+  // generates a rectangular maze with FlatKruskal, writing a checkpoint every given number
+  // of edge indices and picking up from the checkpoint file if one is already there
+  public static void main(String[] args) throws Exception {
+    if (args.length < 3) {
+      System.out.println("usage: KruskalCheckpoint width height checkpointFile "
+          + "[horizontalPreference [seed [edgesPerCheckpoint]]]");
+      return;
+    }
+    int width = Integer.parseInt(args[0]);
+    int height = Integer.parseInt(args[1]);
+    Path file = Paths.get(args[2]);
+    FlatKruskal kruskal = new FlatKruskal(new RectTopology(width, height),
+        args.length > 4 ? Long.parseLong(args[4]) : 0,
+        args.length > 3 ? Integer.parseInt(args[3]) : 1);
+    long interval = args.length > 5 ? Long.parseLong(args[5]) : 1L << 24;
+
+    if (Files.exists(file)) {
+      read(file).restore(kruskal);
+      System.out.println("Resumed at weight " + kruskal.currentWeight + ", edge "
+          + kruskal.currentEdgeCount + " with " + kruskal.edgesInTree + " edges in the tree");
+    }
+    CheckpointWriter writer = new CheckpointWriter(file);
+    long start = System.nanoTime();
+    kruskal.runKruskal(Long.MAX_VALUE, interval, writer);
+    writer.close();
+    System.out.println("Generated " + kruskal.edgesInTree + " edges in "
+        + (System.nanoTime() - start) / 1000000 + " ms, wrote " + writer.written
+        + " checkpoint(s) to " + file);
+  }
+}
+
+// Represents a background thread that writes checkpoints to one file. Each is written
+// to a temporary file next to it and then renamed over it, so the file always holds
+// a whole checkpoint even if the JVM stops partway through a write.
+// The generator's live state and one snapshot make a double buffer: a checkpoint
+// is copied into the snapshot only while the last one is not being written,
+// so the copy never allocates and never races the background thread
+class CheckpointWriter {
+  Path file;
+  ExecutorService executor;
+  Future<?> inFlight;
+  KruskalCheckpoint snapshot;
+  int written;
+  // the first failure to write a checkpoint, set on the background thread
+  volatile IOException failure;
+
+  CheckpointWriter(Path file) {
+    this.file = file;
+    this.snapshot = new KruskalCheckpoint();
+    this.executor = Executors.newSingleThreadExecutor(runnable -> {
+      Thread thread = new Thread(runnable, "checkpoint-writer");
+      thread.setDaemon(true);
+      return thread;
+    });
+  }
+
+  // EFFECT: throws the first failure to write a checkpoint, if there has been one
+  void checkFailure() {
+    if (this.failure != null) {
+      throw new IllegalStateException("Checkpoint writer failed", this.failure);
+    }
+  }
+
+  // returns whether the last checkpoint handed over is still being written,
+  // throwing if an earlier one could not be written
+  boolean isBusy() {
+    this.checkFailure();
+    return this.inFlight != null && !this.inFlight.isDone();
+  }
+
+  // EFFECT: copies the state of the given FlatKruskal into the snapshot and starts
+  // writing it in the background. Returns false without copying anything if the last
+  // one is still being written, and throws if an earlier one could not be written
+  boolean offer(FlatKruskal kruskal) {
+    if (this.isBusy()) {
+      return false;
+    }
+    this.snapshot.copyFrom(kruskal);
+    KruskalCheckpoint checkpoint = this.snapshot;
+    this.inFlight = this.executor.submit(() -> this.write(checkpoint));
+    return true;
+  }
+
+  // EFFECT: writes the given checkpoint to the temporary file and renames it into place
+  void write(KruskalCheckpoint checkpoint) {
+    Path temporary = this.file.resolveSibling(this.file.getFileName() + ".tmp");
+    try {
+      try (DataOutputStream out = new DataOutputStream(
+          new BufferedOutputStream(Files.newOutputStream(temporary), 1 << 16))) {
+        checkpoint.writeTo(out);
+      }
+      Files.move(temporary, this.file,
+          StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+      this.written++;
+    } catch (IOException e) {
+      this.failure = e;
+    }
+  }
+
+  // EFFECT: waits for the last checkpoint handed over to be written
+  void awaitIdle() {
+    try {
+      if (this.inFlight != null) {
+        this.inFlight.get();
+      }
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+    } catch (ExecutionException e) {
+      throw new IllegalStateException("Checkpoint writer failed", e.getCause());
+    }
+  }
+
+  // EFFECT: waits for the last checkpoint to be written and stops the background thread,
+  // throwing the first failure to write one
+  void close() throws IOException {
+    this.awaitIdle();
+    this.executor.shutdown();
+    if (this.failure != null) {
+      throw this.failure;
+    }
+  }
+}
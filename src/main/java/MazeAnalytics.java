@@ -0,0 +1,408 @@
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.stream.IntStream;
+
+// Represents difficulty measures of a finished flat maze: its diameter, how many
+// cells are dead ends, corridors or junctions, how long its corridors are and how
+// long its straight runs are in each direction. The counting passes split the cells
+// into blocks of whole rows and count the blocks in parallel. Finding the diameter
+// is sequential in practice: it is two breadth-first searches, and the levels of a
+// perfect maze are too narrow for DistanceMap to split across threads
+class MazeAnalytics {
+  // roughly how many cells each parallel block covers
+  static final int BLOCK_CELLS = 1 << 16;
+
+  // lengths at or above this share the last bucket of a histogram
+  static final int MAX_LENGTH = 64;
+
+  // the deepest stack of cells treeDiameter keeps, 26 bytes each, before it leaves
+  // a perfect maze that is one long winding path to two breadth-first searches
+  static final int MAX_DEPTH = 1 << 22;
+
+  FlatMaze maze;
+  ITopology topology;
+
+  // number of open passages of each cell
+  byte[] degrees;
+
+  // degreeHistogram[d] is the number of cells with d open passages
+  long[] degreeHistogram;
+
+  // corridorHistogram[n] is the number of corridors of n cells between two cells
+  // that are not corridor cells (dead ends or junctions)
+  long[] corridorHistogram;
+
+  // runHistograms[d][n] is the number of straight runs of n passages in forward direction d
+  long[][] runHistograms;
+
+  int diameter;
+  int diameterFrom;
+  int diameterTo;
+
+  MazeAnalytics(FlatMaze maze) {
+    this.maze = maze;
+    this.topology = maze.topology;
+  }
+
+  // EFFECT: runs every analysis on the maze
+  MazeAnalytics run() {
+    this.countDegrees();
+    this.countRuns();
+    this.countCorridors();
+    this.findDiameter();
+    return this;
+  }
+
+  // returns the number of cells with one open passage
+  long deadEnds() {
+    return this.degreeHistogram[1];
+  }
+
+  // returns the number of cells with three or more open passages
+  long junctions() {
+    long total = 0;
+    for (int degree = 3; degree < this.degreeHistogram.length; degree++) {
+      total += this.degreeHistogram[degree];
+    }
+    return total;
+  }
+
+  // returns the average length of the straight runs in the given forward direction
+  double averageRun(int direction) {
+    long runs = 0;
+    long passages = 0;
+    for (int length = 1; length <= MAX_LENGTH; length++) {
+      runs += this.runHistograms[direction][length];
+      passages += length * this.runHistograms[direction][length];
+    }
+    return runs == 0 ? 0 : (double) passages / runs;
+  }
+
+  // returns the number of cells in each parallel block, always whole rows of a grid
+  int blockSize() {
+    if (this.topology instanceof GridTopology) {
+      int width = ((GridTopology) this.topology).width;
+      return Math.max(1, BLOCK_CELLS / width) * width;
+    }
+    return BLOCK_CELLS;
+  }
+
+  // returns the number of parallel blocks
+  int blocks() {
+    return (this.topology.cellCount() + this.blockSize() - 1) / this.blockSize();
+  }
+
+  // adds up histograms counted separately by each block
+  static long[] sum(long[][] histograms, int length) {
+    long[] total = new long[length];
+    for (long[] histogram : histograms) {
+      for (int i = 0; i < length; i++) {
+        total[i] += histogram[i];
+      }
+    }
+    return total;
+  }
+
+  // EFFECT: counts the open passages of each cell
+  void countDegrees() {
+    int cells = this.topology.cellCount();
+    int block = this.blockSize();
+    int directions = this.topology.directions();
+    this.degrees = new byte[cells];
+    long[][] histograms = new long[this.blocks()][];
+    IntStream.range(0, this.blocks()).parallel().forEach(b -> {
+      long[] histogram = new long[directions + 1];
+      for (int cell = b * block; cell < Math.min(cells, (b + 1) * block); cell++) {
+        int degree = 0;
+        int cellClass = this.topology.cellClass(cell);
+        for (int direction = 0; direction < directions; direction++) {
+          if (this.maze.openNeighbor(cell, direction, cellClass) >= 0) {
+            degree++;
+          }
+        }
+        this.degrees[cell] = (byte) degree;
+        histogram[degree]++;
+      }
+      histograms[b] = histogram;
+    });
+    this.degreeHistogram = sum(histograms, directions + 1);
+  }
+
+  // EFFECT: counts the straight runs of passages in each forward direction,
+  // starting each run at the cell whose passage behind it is closed. A run that wraps
+  // all the way around a torus has no such cell, so when the runs found miss any open
+  // passage the rings are counted by countRunRings
+  void countRuns() {
+    int cells = this.topology.cellCount();
+    int block = this.blockSize();
+    int forward = this.topology.forwardDirections();
+    this.runHistograms = new long[forward][];
+    for (int direction = 0; direction < forward; direction++) {
+      int d = direction;
+      long[][] histograms = new long[this.blocks()][];
+      // passages on the runs found, and open passages, in each block
+      long[][] passages = new long[this.blocks()][2];
+      IntStream.range(0, this.blocks()).parallel().forEach(b -> {
+        long[] histogram = new long[MAX_LENGTH + 1];
+        for (int cell = b * block; cell < Math.min(cells, (b + 1) * block); cell++) {
+          int cellClass = this.topology.cellClass(cell);
+          int next = this.maze.openNeighbor(cell, d, cellClass);
+          if (next < 0) {
+            continue;
+          }
+          passages[b][1]++;
+          if (this.maze.openNeighbor(cell, d + forward, cellClass) < 0) {
+            int length = 1;
+            while ((next = this.maze.openNeighbor(next, d, this.topology.cellClass(next))) >= 0) {
+              length++;
+            }
+            histogram[Math.min(length, MAX_LENGTH)]++;
+            passages[b][0] += length;
+          }
+        }
+        histograms[b] = histogram;
+      });
+      this.runHistograms[direction] = sum(histograms, MAX_LENGTH + 1);
+      long[] total = sum(passages, 2);
+      if (total[0] < total[1]) {
+        this.countRunRings(direction);
+      }
+    }
+  }
+
+  // EFFECT: counts the runs in the given forward direction that wrap around to where
+  // they started. Walks from each cell open both ways until it comes back (a ring)
+  // or reaches the end of a run or a cell already walked (not a ring), marking the
+  // cells it walks so each is walked once
+  void countRunRings(int direction) {
+    int cells = this.topology.cellCount();
+    int back = direction + this.topology.forwardDirections();
+    BitSet walked = new BitSet(cells);
+    for (int cell = 0; cell < cells; cell++) {
+      if (walked.get(cell) || !this.maze.isOpen(cell, direction)
+          || !this.maze.isOpen(cell, back)) {
+        continue;
+      }
+      walked.set(cell);
+      int length = 1;
+      int next = this.topology.neighbor(cell, direction);
+      while (next != cell && !walked.get(next) && this.maze.isOpen(next, direction)) {
+        walked.set(next);
+        length++;
+        next = this.topology.neighbor(next, direction);
+      }
+      if (next == cell) {
+        this.runHistograms[direction][Math.min(length, MAX_LENGTH)]++;
+      }
+    }
+  }
+
+  // EFFECT: counts the corridors, walking from every cell that is not a corridor cell
+  // through the corridor cells beyond each of its passages. Each corridor is walked
+  // from both ends and counted from the end with the smaller index. A walk always ends,
+  // at the latest back at the cell it started from, since that is not a corridor cell.
+  // A ring of corridor cells has no end to start from, so when the corridors found miss
+  // any corridor cell the rings are counted by countCorridorRings
+  void countCorridors() {
+    int cells = this.topology.cellCount();
+    int block = this.blockSize();
+    int directions = this.topology.directions();
+    long[][] histograms = new long[this.blocks()][];
+    // corridor cells on the corridors counted in each block
+    long[][] corridorCells = new long[this.blocks()][1];
+    IntStream.range(0, this.blocks()).parallel().forEach(b -> {
+      long[] histogram = new long[MAX_LENGTH + 1];
+      for (int cell = b * block; cell < Math.min(cells, (b + 1) * block); cell++) {
+        if (this.degrees[cell] == 2) {
+          continue;
+        }
+        int cellClass = this.topology.cellClass(cell);
+        for (int direction = 0; direction < directions; direction++) {
+          int next = this.maze.openNeighbor(cell, direction, cellClass);
+          if (next < 0) {
+            continue;
+          }
+          int length = 0;
+          int back = this.topology.opposite(direction);
+          while (this.degrees[next] == 2) {
+            length++;
+            int out = this.otherPassage(next, back);
+            next = this.topology.neighbor(next, out);
+            back = this.topology.opposite(out);
+          }
+          if (length > 0 && (cell < next || (cell == next && direction < back))) {
+            histogram[Math.min(length, MAX_LENGTH)]++;
+            corridorCells[b][0] += length;
+          }
+        }
+      }
+      histograms[b] = histogram;
+    });
+    this.corridorHistogram = sum(histograms, MAX_LENGTH + 1);
+    if (sum(corridorCells, 1)[0] < this.degreeHistogram[2]) {
+      this.countCorridorRings();
+    }
+  }
+
+  // returns the open passage of the given corridor cell other than the given direction
+  int otherPassage(int cell, int back) {
+    int cellClass = this.topology.cellClass(cell);
+    int out = 0;
+    while (out == back || this.maze.openNeighbor(cell, out, cellClass) < 0) {
+      out++;
+    }
+    return out;
+  }
+
+  // EFFECT: counts the rings made only of corridor cells. Walks from each corridor cell
+  // until it comes back (a ring) or reaches a cell that is not a corridor cell or was
+  // already walked (not a ring), marking the cells it walks so each is walked once
+  void countCorridorRings() {
+    int cells = this.topology.cellCount();
+    BitSet walked = new BitSet(cells);
+    for (int cell = 0; cell < cells; cell++) {
+      if (this.degrees[cell] != 2 || walked.get(cell)) {
+        continue;
+      }
+      walked.set(cell);
+      int length = 1;
+      int out = this.otherPassage(cell, -1);
+      int next = this.topology.neighbor(cell, out);
+      int back = this.topology.opposite(out);
+      while (next != cell && this.degrees[next] == 2 && !walked.get(next)) {
+        walked.set(next);
+        length++;
+        out = this.otherPassage(next, back);
+        next = this.topology.neighbor(next, out);
+        back = this.topology.opposite(out);
+      }
+      if (next == cell) {
+        this.corridorHistogram[Math.min(length, MAX_LENGTH)]++;
+      }
+    }
+  }
+
+  // EFFECT: finds the longest path in the maze. A perfect maze gets it exactly from one
+  // depth-first walk in treeDiameter. Any other maze, or a perfect maze too deep for
+  // that walk's stack, gets two breadth-first searches with a DistanceMap, the first from
+  // cell 0 to the farthest cell and the second from that cell, which is exact for a tree
+  // and only a lower bound once there are loops. Both stay on one thread, since the
+  // levels of a perfect maze are too narrow to split
+  void findDiameter() {
+    if (this.treeDiameter()) {
+      return;
+    }
+    DistanceMap map = new DistanceMap(this.maze);
+    this.diameterFrom = map.run(0).farthest();
+    this.diameterTo = map.run(this.diameterFrom).farthest();
+    this.diameter = map.maxDistance;
+  }
+
+  // EFFECT: finds the diameter of a perfect maze in one depth-first walk from cell 0,
+  // returning false without finding it if the maze is not a spanning tree or the walk
+  // gets deeper than MAX_DEPTH. Each cell on the stack keeps the two longest paths down
+  // into the subtrees it has finished, with the cells they end at, and the longest path
+  // in the maze bends at the cell where those two add up to the most. In a tree the only
+  // visited neighbor of a cell is the one above it on the stack, so nothing is kept per
+  // cell, and a maze with a loop is caught by finding more cells than there are
+  boolean treeDiameter() {
+    int cells = this.topology.cellCount();
+    int directions = this.topology.directions();
+    int capacity = 64;
+    int[] stackCells = new int[capacity];
+    int[] classes = new int[capacity];
+    byte[] backs = new byte[capacity];
+    byte[] nextDirections = new byte[capacity];
+    int[] longest = new int[capacity];
+    int[] longestEnds = new int[capacity];
+    int[] second = new int[capacity];
+    int[] secondEnds = new int[capacity];
+
+    stackCells[0] = 0;
+    classes[0] = this.topology.cellClass(0);
+    backs[0] = -1;
+    longestEnds[0] = 0;
+    secondEnds[0] = 0;
+    int top = 0;
+    long found = 1;
+    this.diameter = 0;
+    this.diameterFrom = 0;
+    this.diameterTo = 0;
+    while (top >= 0) {
+      int cell = stackCells[top];
+      int child = -1;
+      int direction = nextDirections[top];
+      for (; direction < directions && child < 0; direction++) {
+        if (direction != backs[top]) {
+          child = this.maze.openNeighbor(cell, direction, classes[top]);
+        }
+      }
+      nextDirections[top] = (byte) direction;
+
+      if (child >= 0) {
+        found++;
+        if (found > cells || top + 1 == MAX_DEPTH) {
+          return false;
+        }
+        top++;
+        if (top == capacity) {
+          capacity *= 2;
+          stackCells = Arrays.copyOf(stackCells, capacity);
+          classes = Arrays.copyOf(classes, capacity);
+          backs = Arrays.copyOf(backs, capacity);
+          nextDirections = Arrays.copyOf(nextDirections, capacity);
+          longest = Arrays.copyOf(longest, capacity);
+          longestEnds = Arrays.copyOf(longestEnds, capacity);
+          second = Arrays.copyOf(second, capacity);
+          secondEnds = Arrays.copyOf(secondEnds, capacity);
+        }
+        stackCells[top] = child;
+        classes[top] = this.topology.cellClass(child);
+        backs[top] = (byte) this.topology.opposite(direction - 1);
+        nextDirections[top] = 0;
+        longest[top] = 0;
+        longestEnds[top] = child;
+        second[top] = 0;
+        secondEnds[top] = child;
+        continue;
+      }
+
+      // every subtree of this cell is finished
+      if (longest[top] + second[top] > this.diameter) {
+        this.diameter = longest[top] + second[top];
+        this.diameterFrom = longestEnds[top];
+        this.diameterTo = secondEnds[top];
+      }
+      if (top > 0) {
+        int length = longest[top] + 1;
+        int above = top - 1;
+        if (length > longest[above]) {
+          second[above] = longest[above];
+          secondEnds[above] = longestEnds[above];
+          longest[above] = length;
+          longestEnds[above] = longestEnds[top];
+        } else if (length > second[above]) {
+          second[above] = length;
+          secondEnds[above] = longestEnds[top];
+        }
+      }
+      top--;
+    }
+    return found == cells;
+  }
+
+  // returns a readable summary of these analytics
+  String summary() {
+    StringBuilder summary = new StringBuilder();
+    summary.append("diameter ").append(this.diameter)
+        .append(" (").append(this.diameterFrom).append(" to ").append(this.diameterTo)
+        .append("), dead ends ").append(this.deadEnds())
+        .append(", corridor cells ").append(this.degreeHistogram[2])
+        .append(", junctions ").append(this.junctions());
+    for (int direction = 0; direction < this.topology.forwardDirections(); direction++) {
+      summary.append(String.format(", direction %d runs average %.2f",
+          direction, this.averageRun(direction)));
+    }
+    return summary.toString();
+  }
+}
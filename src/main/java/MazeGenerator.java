@@ -3,6 +3,8 @@ import java.util.ArrayList;
 import java.util.Collections;
 import java.util.Comparator;
 import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Random;
 import javalib.worldimages.*;
 
 // Represents a Cell in a Graph
@@ -143,6 +145,43 @@ class Graph {
   public Graph(ArrayList<Cell> cells) {
     this.cells = cells;
   }
+
+  // builds a graph with a cell for each coordinate of a width by height grid,
+  // connected to the cells to its right and below it by randomly weighted edges
+  public Graph(int width, int height, int horizontalPreference, Random rand) {
+
+    // create all the cells
+    this.cells = new ArrayList<Cell>();
+    for (int x = 0; x < height; x++) {
+      for (int y = 0; y < width; y++) {
+        Cell cell = new Cell(y, x);
+        this.cells.add(cell);
+      }
+    }
+
+    // create cell outEdges
+    for (Cell cell : this.cells) {
+      // connect this cell to the cell to its right
+      if (cell.x < width - 1) {
+        Cell rightCell = this.cells.get(width * cell.y + cell.x + 1);
+        int weight = rand.nextInt(10) + 1; 
+        Edge edge1 = new Edge(cell, rightCell, weight);
+        Edge edge2 = new Edge(rightCell, cell, weight);
+        cell.outEdges.add(edge1);
+        rightCell.outEdges.add(edge2);
+      }
+
+      // connect this cell to the cell below it
+      if (cell.y < height - 1) {
+        Cell bottomCell = this.cells.get(width * (cell.y + 1) + cell.x);
+        int weight = rand.nextInt(10 * horizontalPreference) + 1; 
+        Edge edge3 = new Edge(cell, bottomCell, weight);
+        Edge edge4 = new Edge(bottomCell, cell, weight);
+        cell.outEdges.add(edge3);
+        bottomCell.outEdges.add(edge4);
+      }
+    }
+  }
 }
 
 // represents a class to run Kruskal's algorithm
@@ -152,9 +191,11 @@ class Kruskal {
   HashMap<Cell, Cell> representatives;
   ArrayList<Edge> edgesInTree;
   ArrayList<Edge> worklist;
+  GenerationLog log;
 
   public Kruskal(Graph graph) {
     this.graph = graph;
+    this.log = new GenerationLog();
 
     this.representatives = new HashMap<Cell, Cell>();
     for (Cell cell : this.graph.cells) {
@@ -202,10 +243,13 @@ class Kruskal {
     return newList;
   }
 
-  // finds the representative of a given Cell
+  // finds the representative of a given Cell, pointing each Cell on the way
+  // at its grandparent so later searches are shorter
   Cell findRepresentative(Cell node) {
     while (this.representatives.get(node) != node) {
-      node = this.representatives.get(node);
+      Cell grandparent = this.representatives.get(this.representatives.get(node));
+      this.representatives.put(node, grandparent);
+      node = grandparent;
     }
     return node;
   }
@@ -219,14 +263,16 @@ class Kruskal {
 
   // runs Kruskal's algorithm on this class's graph
   void runKruskalImmediately() {
-    for (int currentEdgeCount = 0;
+    for (int currentEdgeCount = this.log.steps;
         this.edgesInTree.size() < this.representatives.size() - 1;
         currentEdgeCount++) {
       Edge currentEdge = this.worklist.get(currentEdgeCount );
       if (this.findRepresentative(currentEdge.from) 
           == this.findRepresentative(currentEdge.to)) {
+        this.log.record(currentEdgeCount, false);
         continue;
       } else {
+        this.log.record(currentEdgeCount, true);
         this.edgesInTree.add(currentEdge);
         this.unionRepresentative(
             this.findRepresentative(currentEdge.from),
@@ -243,8 +289,10 @@ class Kruskal {
       Edge currentEdge = this.worklist.get(currentEdgeCount);
       if (this.findRepresentative(currentEdge.from) 
           == this.findRepresentative(currentEdge.to)) {
+        this.log.record(currentEdgeCount, false);
         return true;
       } else {
+        this.log.record(currentEdgeCount, true);
         this.edgesInTree.add(currentEdge);
         this.unionRepresentative(
             this.findRepresentative(currentEdge.from),
@@ -256,6 +304,23 @@ class Kruskal {
     }
   }
 
+  // returns a random fraction of the edges left out of the finished tree,
+  // each pair of cells once, to be opened as loops that make the maze a braid
+  ArrayList<Edge> braid(double fraction, Random rand) {
+    if (fraction <= 0) {
+      return new ArrayList<Edge>();
+    }
+    HashSet<Edge> seen = new HashSet<Edge>(this.edgesInTree);
+    ArrayList<Edge> loops = new ArrayList<Edge>();
+    for (Edge edge : this.worklist) {
+      // Edge equality ignores direction, so this skips tree edges and reversed duplicates
+      if (seen.add(edge) && rand.nextDouble() < fraction) {
+        loops.add(edge);
+      }
+    }
+    return loops;
+  }
+
   // returns the sum of weights in this graph,
   // used to test if tree is a MST
   int sumWeights() {
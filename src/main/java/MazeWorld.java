@@ -1,10 +1,9 @@
 import javalib.impworld.*;
 import java.awt.Color;
 import java.util.ArrayDeque;
-import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
 import java.util.Deque;
-import java.util.HashMap;
-import java.util.Iterator;
 import java.util.Random;
 import javalib.worldimages.*;
 
@@ -65,13 +64,11 @@ class Queue<T> implements ICollection<T> {
 
 // represents a player of the maze
 class Player {
-  Cell currentPos;
-  ArrayList<Cell> visited;
+  // the index of the cell the player is on
+  int currentPos;
 
-  Player(Cell currentPos) {
+  Player(int currentPos) {
     this.currentPos = currentPos;
-    this.visited = new ArrayList<Cell>();
-    this.visited.add(this.currentPos);
   }
 }
 
@@ -79,27 +76,64 @@ class Player {
 class MazeWorld extends World {
 
   static int SCREEN_WIDTH = 800;
+  static int MAX_SCREEN_HEIGHT = 800;
+
+  // below this many pixels per cell a maze that does not fit the window at one pixel
+  // per cell is drawn as a density overlay
+  static int DETAIL_SCALE = 4;
+  static int MAX_SCALE = 64;
+
+  // the fraction of the edges left out of the tree that braid mode opens as loops
+  // when no other fraction is given
+  static double DEFAULT_BRAID_FRACTION = 0.1;
+
   int screenHeight;
   int mazeWidth;
   int mazeHeight;
   int cellSize;
   int horizontalPreference;
 
-  Graph graph;
-  Kruskal kruskal;
+  // the viewport: pixels per cell, the scale that fits the whole maze,
+  // and the cell at the top left of the window
+  double scale;
+  double fitScale;
+  // the fewest pixels per cell at which cells are drawn one by one: DETAIL_SCALE, or less
+  // for a maze that fits the window with at least one pixel per cell, so it is drawn
+  // cell by cell as it always was
+  double detailScale;
+  int viewX;
+  int viewY;
+
+  // the passages of the maze as generated so far, which are kruskal.maze,
+  // and the walls still standing in each block of cells
+  FlatMaze passages;
+  DensityPyramid density;
+
+  // the generator for the edge weights and the loops of the current maze
+  Random rand;
+  FlatKruskal kruskal;
   Player player;
 
-  int currentEdgeCount;
-  HashMap<Cell, Cell> cameFromEdge;
-  Deque<Cell> alreadySeen;
-  Stack<Cell> worklistStack;
-  Queue<Cell> worklistQueue;
-  ArrayList<Cell> backTrackPath;
+  // runs Kruskal's algorithm until it has accepted replaySpeed more passages each tick
+  int replaySpeed;
+  // the direction back towards the start from each cell a search has reached,
+  // stored off by one so 0 means unreached, like FlatSolver
+  byte[] cameFrom;
+  Stack<Integer> worklistStack;
+  Queue<Integer> worklistQueue;
+
+  // the cells the searches have seen, the cells the player has been on, and the cells
+  // on the path a search found, as bits of their index
+  BitSet seenCells;
+  BitSet visitedCells;
+  BitSet pathCells;
 
   boolean mazeGenerating;
+  // whether the loops, solution path and heatmap of the generated maze are ready
+  boolean finished;
   boolean doneSearching;
-  Cell currentCell;
-  boolean doneAddingNeighbors;
+  // the cell the path found by a search has been traced back to
+  int currentCell;
   boolean doneBackTracking;
   boolean dfs;
   boolean bfs;
@@ -111,129 +145,171 @@ class MazeWorld extends World {
   int dFSPathLength;
   boolean ended;
 
+  // pathIndex[c] is how many moves along the path from the top left to the bottom right
+  // cell is c, or -1 if c is not on it, computed once when generation finishes
+  int[] pathIndex;
+  int onPathMoves;
+  int offPathMoves;
+
+  // whether braid mode is on, and the fraction of left out edges it opens as loops
+  // once generation finishes
+  boolean braided;
+  double braidFraction;
+
+  // how many cells the last Dijkstra's search settled, how long it took,
+  // and the cost of the path it found
+  int dijkstraSettled;
+  long dijkstraNanos;
+  int dijkstraCost;
+
+  // the distance from the top left cell to every cell, shown as colors when showHeatmap is on
+  DistanceMap heatmap;
+  boolean showHeatmap;
+
   MazeWorld(int mazeWidth, int mazeHeight, int horizontalPreference) {
+    this(mazeWidth, mazeHeight, horizontalPreference, 0.0);
+  }
+
+  // starts in braid mode when braidFraction is above 0
+  MazeWorld(int mazeWidth, int mazeHeight, int horizontalPreference, double braidFraction) {
     this.mazeWidth = mazeWidth;
     this.mazeHeight = mazeHeight;
-    this.cellSize = Math.min(SCREEN_WIDTH / mazeWidth, 800 / mazeHeight);
-    this.screenHeight = this.mazeHeight * this.cellSize;
+    this.initViewport();
     this.horizontalPreference = horizontalPreference;
-    this.initGraph();    
+    this.initBraid(braidFraction);
+    this.initRandom();
     this.initKruskal();
   }
 
   // constructor for testing
   MazeWorld(int mazeWidth, int mazeHeight, int horizontalPreference, int seed) {
+    this(mazeWidth, mazeHeight, horizontalPreference, seed, 0.0);
+  }
+
+  // constructor for testing braid mode
+  MazeWorld(int mazeWidth, int mazeHeight, int horizontalPreference, int seed,
+      double braidFraction) {
     this.mazeWidth = mazeWidth;
     this.mazeHeight = mazeHeight;
-    this.cellSize = Math.min(SCREEN_WIDTH / mazeWidth, 800 / mazeHeight);
-    this.screenHeight = this.mazeHeight * this.cellSize;
+    this.initViewport();
     this.horizontalPreference = horizontalPreference;
-    this.initGraph(seed);  
+    this.initBraid(braidFraction);
+    this.initRandom(seed);
     this.initKruskal();
   }
 
-  // overloads initGraph() by providing a seed to random
-  // initializes the graph with cells for each coordinate
-  void initGraph(int seed) {
-    Random rand = new Random(seed);
+  // turns braid mode on with the given fraction if it is above 0, and otherwise
+  // leaves it off with the default fraction for when it is turned on
+  void initBraid(double braidFraction) {
+    this.braided = braidFraction > 0;
+    this.braidFraction = this.braided ? braidFraction : DEFAULT_BRAID_FRACTION;
+  }
 
-    // create all the cells
-    ArrayList<Cell> cells = new ArrayList<Cell>();
-    for (int x = 0; x < this.mazeHeight; x++) {
-      for (int y = 0; y < this.mazeWidth; y++) {
-        Cell cell = new Cell(y, x);
-        cells.add(cell);
-      }
-    }
+  // fits the whole maze in the window, with whole pixels per cell when
+  // there is at least one pixel per cell
+  void initViewport() {
+    this.fitScale = Math.min((double) SCREEN_WIDTH / this.mazeWidth,
+        (double) MAX_SCREEN_HEIGHT / this.mazeHeight);
+    if (this.fitScale >= 1) {
+      this.fitScale = Math.floor(this.fitScale);
+    }
+    this.detailScale = this.fitScale >= 1 ? Math.min(DETAIL_SCALE, this.fitScale) : DETAIL_SCALE;
+    this.screenHeight = (int) Math.ceil(this.mazeHeight * this.fitScale);
+    this.scale = this.fitScale;
+    this.cellSize = (int) this.scale;
+    this.viewX = 0;
+    this.viewY = 0;
+  }
 
-    // create cell outEdges
-    for (Cell cell : cells) {
-      // connect this cell to the cell to its right
-      if (cell.x < this.mazeWidth - 1) {
-        Cell rightCell = cells.get(this.mazeWidth * cell.y + cell.x + 1);
-        int weight = rand.nextInt(10) + 1; 
-        Edge edge1 = new Edge(cell, rightCell, weight);
-        Edge edge2 = new Edge(rightCell, cell, weight);
-        cell.outEdges.add(edge1);
-        rightCell.outEdges.add(edge2);
-      }
+  // sets the pixels per cell, keeping the cell at the center of the window in place
+  void setScale(double scale) {
+    int centerX = this.viewX + this.visibleColumns() / 2;
+    int centerY = this.viewY + this.visibleRows() / 2;
+    this.scale = Math.max(this.fitScale, Math.min(MAX_SCALE, scale));
+    if (this.scale >= this.detailScale) {
+      // whole pixels per cell so the walls of neighboring cells line up
+      this.scale = Math.floor(this.scale);
+    }
+    this.cellSize = (int) this.scale;
+    this.moveView(centerX - this.visibleColumns() / 2, centerY - this.visibleRows() / 2);
+  }
 
-      // connect this cell to the cell below it
-      if (cell.y < this.mazeHeight - 1) {
-        Cell bottomCell = cells.get(this.mazeWidth * (cell.y + 1) + cell.x);
-        int weight = rand.nextInt(10 * this.horizontalPreference) + 1; 
-        Edge edge3 = new Edge(cell, bottomCell, weight);
-        Edge edge4 = new Edge(bottomCell, cell, weight);
-        cell.outEdges.add(edge3);
-        //cell.bottom = edge3.to;
-        bottomCell.outEdges.add(edge4);
-        //bottomCell.top = edge3.from;
-      }
-    }
+  // moves the top left of the view to the given cell, keeping the view inside the maze
+  void moveView(int x, int y) {
+    this.viewX = Math.max(0, Math.min(this.mazeWidth - this.visibleColumns(), x));
+    this.viewY = Math.max(0, Math.min(this.mazeHeight - this.visibleRows(), y));
+  }
 
-    // adds cells to graph
-    this.graph = new Graph(cells);
+  // moves the view so the player is inside it
+  void keepPlayerInView() {
+    int x = this.player.currentPos % this.mazeWidth;
+    int y = this.player.currentPos / this.mazeWidth;
+    if (!this.isVisible(x, y)) {
+      this.moveView(x - this.visibleColumns() / 2, y - this.visibleRows() / 2);
+    }
+  }
 
+  // returns the number of cells across the window
+  int visibleColumns() {
+    return (int) Math.ceil(SCREEN_WIDTH / this.scale);
   }
 
-  // initializes the graph with cells for each coordinate
-  void initGraph() {
-    Random rand = new Random();
+  // returns the number of cells down the window
+  int visibleRows() {
+    return (int) Math.ceil(this.screenHeight / this.scale);
+  }
 
-    // create all the cells
-    ArrayList<Cell> cells = new ArrayList<Cell>();
-    for (int x = 0; x < this.mazeHeight; x++) {
-      for (int y = 0; y < this.mazeWidth; y++) {
-        Cell cell = new Cell(y, x);
-        cells.add(cell);
-      }
-    }
+  // returns whether the cell at the given coordinates is in the view
+  boolean isVisible(int x, int y) {
+    return x >= this.viewX && x < this.viewX + this.visibleColumns()
+        && y >= this.viewY && y < this.viewY + this.visibleRows();
+  }
 
-    // create cell outEdges
-    for (Cell cell : cells) {
-      // connect this cell to the cell to its right
-      if (cell.x < this.mazeWidth - 1) {
-        Cell rightCell = cells.get(this.mazeWidth * cell.y + cell.x + 1);
-        int weight = rand.nextInt(10) + 1; 
-        Edge edge1 = new Edge(cell, rightCell, weight);
-        Edge edge2 = new Edge(rightCell, cell, weight);
-        cell.outEdges.add(edge1);
-        rightCell.outEdges.add(edge2);
-      }
+  // places the given image at the cell with the given coordinates if it is in view
+  void placeAtCell(WorldScene scene, WorldImage image, int x, int y) {
+    this.placeAtCell(scene, image, x, y, 0, 0);
+  }
 
-      // connect this cell to the cell below it
-      if (cell.y < this.mazeHeight - 1) {
-        Cell bottomCell = cells.get(this.mazeWidth * (cell.y + 1) + cell.x);
-        int weight = rand.nextInt(10 * this.horizontalPreference) + 1; 
-        Edge edge3 = new Edge(cell, bottomCell, weight);
-        Edge edge4 = new Edge(bottomCell, cell, weight);
-        cell.outEdges.add(edge3);
-        //cell.bottom = edge3.to;
-        bottomCell.outEdges.add(edge4);
-        //bottomCell.top = edge3.from;
-      }
+  // places the given image at the cell with the given coordinates if it is in view,
+  // moved the given number of pixels from the cell's center
+  void placeAtCell(WorldScene scene, WorldImage image, int x, int y, int dx, int dy) {
+    if (this.isVisible(x, y)) {
+      scene.placeImageXY(image,
+          (int) ((x - this.viewX) * this.scale) + this.cellSize / 2 + dx,
+          (int) ((y - this.viewY) * this.scale) + this.cellSize / 2 + dy);
     }
+  }
 
-    // adds cells to graph
-    this.graph = new Graph(cells);
+  // starts a random generator for the edge weights and loops from the given seed
+  void initRandom(int seed) {
+    this.rand = new Random(seed);
+  }
 
+  // starts a random generator for the edge weights and loops
+  void initRandom() {
+    this.rand = new Random();
   }
 
-  // runs Kruskal's algorithm on this graph
+  // starts Kruskal's algorithm on a new maze with weights seeded by rand,
   // and reinitializes several fields for reuse
   void initKruskal() {
-    this.currentEdgeCount = 0;
-    this.kruskal = new Kruskal(this.graph);
-    this.cameFromEdge = new HashMap<Cell, Cell>();
-    this.alreadySeen = new ArrayDeque<Cell>();
-    this.worklistStack = new Stack<Cell>();
-    this.worklistQueue = new Queue<Cell>();
-    this.backTrackPath = new ArrayList<Cell>();
-    this.currentCell = this.graph.cells.get(this.mazeWidth * this.mazeHeight - 1);
+    this.kruskal = new FlatKruskal(new RectTopology(this.mazeWidth, this.mazeHeight),
+        this.rand.nextLong(), this.horizontalPreference);
+    this.replaySpeed = 1;
+    this.passages = this.kruskal.maze;
+    this.density = new DensityPyramid(this.mazeWidth, this.mazeHeight);
+    this.cameFrom = null;
+    this.worklistStack = new Stack<Integer>();
+    this.worklistQueue = new Queue<Integer>();
+    this.seenCells = new BitSet();
+    this.visitedCells = new BitSet();
+    this.visitedCells.set(0);
+    this.pathCells = new BitSet();
+    this.currentCell = this.mazeWidth * this.mazeHeight - 1;
     this.mazeGenerating = true;
+    this.finished = false;
     this.doneSearching = false;
-    this.doneAddingNeighbors = false;
-    this.player = new Player(this.graph.cells.get(0));
+    this.player = new Player(0);
     this.dfs = false;
     this.bfs = false;
     this.doneBackTracking = false;
@@ -244,6 +320,37 @@ class MazeWorld extends World {
     this.bFSPathLength = 0;
     this.dFSPathLength = 0;
     this.ended = false;
+    this.pathIndex = null;
+    this.onPathMoves = 0;
+    this.offPathMoves = 0;
+    this.dijkstraSettled = 0;
+    this.dijkstraNanos = 0;
+    this.dijkstraCost = 0;
+    this.heatmap = null;
+  }
+
+  // returns whether there is more of the maze to generate
+  // EFFECT: runs Kruskal's algorithm until it has accepted the given number of passages
+  // more or finished, taking each accepted passage's wall out of the density pyramid
+  boolean generate(long accepted) {
+    while (accepted > 0 && !this.kruskal.isDone()) {
+      // runKruskal(1) looks at exactly the edge index it is on
+      int edge = this.kruskal.currentEdgeCount;
+      int before = this.kruskal.edgesInTree;
+      this.kruskal.runKruskal(1);
+      if (this.kruskal.edgesInTree > before) {
+        this.removeWall(edge);
+        accepted--;
+      }
+    }
+    return !this.kruskal.isDone();
+  }
+
+  // EFFECT: takes the wall of the given passage out of the density pyramid. The wall
+  // between two cells belongs to the left or upper one, which the passage leaves
+  void removeWall(int edge) {
+    int cell = edge / 2;
+    this.density.removeWall(cell % this.mazeWidth, cell / this.mazeWidth);
   }
 
   // displays the maze
@@ -252,83 +359,21 @@ class MazeWorld extends World {
 
     // displays if the user reaches the end of maze
     if (this.ended) {
-      if (!this.doneSearching) {
-        this.hasPathBetweenDFSImmediately(this.graph.cells.get(0), 
-            this.graph.cells.get(this.mazeHeight * this.mazeWidth - 1));
-      }
-
       toReturn.placeImageXY(new TextImage("You win!", SCREEN_WIDTH / 8, Color.black), 
           SCREEN_WIDTH / 2, screenHeight / 2 - 35);
-      toReturn.placeImageXY(new TextImage("With " + Integer.toString(this.playerMoves 
-          - this.backTrackPath.size()) + " wrong moves!",
+      toReturn.placeImageXY(new TextImage("With " + Integer.toString(this.wrongMoves())
+          + " wrong moves!",
           SCREEN_WIDTH / 15, Color.black), SCREEN_WIDTH / 2, screenHeight / 2 + 35);
+      toReturn.placeImageXY(new TextImage("and " + Integer.toString(this.onPathMoves)
+          + " moves along the path",
+          SCREEN_WIDTH / 25, Color.black), SCREEN_WIDTH / 2, screenHeight / 2 + 85);
       return toReturn;
     }
 
-    // places where BFS/DFS searches
-    if (!this.alreadySeen.isEmpty() && !this.mazeGenerating && this.toggleAlreadySeen) {
-      for (Cell cell : this.alreadySeen) {
-        toReturn.placeImageXY(cell.makeLightBlueCell(cellSize),
-            cell.x * cellSize + cellSize / 2,
-            cell.y * cellSize + cellSize / 2);
-      }
-    }
-
-    // places cell walls
-    for (Cell cell : this.graph.cells) {
-      if (cell.x == 0 && cell.y == 0) {
-        toReturn.placeImageXY(cell.makeStartCell(cellSize), 
-            cell.x * cellSize + cellSize / 2,
-            cell.y * cellSize + cellSize / 2);
-        toReturn.placeImageXY(cell.makeCell(cellSize, true, true, Color.black), 
-            cell.x * cellSize + cellSize / 2,
-            cell.y * cellSize + cellSize / 2);
-      } else if (cell.x == mazeWidth - 1 && cell.y == mazeHeight - 1) {
-        toReturn.placeImageXY(cell.makeEndCell(cellSize), 
-            cell.x * cellSize + cellSize / 2,
-            cell.y * cellSize + cellSize / 2);
-      } else {
-        toReturn.placeImageXY(cell.makeCell(cellSize, true, true, Color.black), 
-            cell.x * cellSize + cellSize / 2,
-            cell.y * cellSize + cellSize / 2);
-      }
-    }
-
-    // removes cell walls
-    for (Edge edge : this.kruskal.edgesInTree) {
-      if (edge.to.x == edge.from.x + 1) {
-        toReturn.placeImageXY(edge.from.makeCell(cellSize, false, true, Color.white), 
-            edge.from.x * cellSize + cellSize / 2,
-            edge.from.y * cellSize + cellSize / 2);
-      }
-      if (edge.to.y == edge.from.y + 1) {
-        toReturn.placeImageXY(edge.from.makeCell(cellSize, true, false, Color.white), 
-            edge.from.x * cellSize + cellSize / 2,
-            edge.from.y * cellSize + cellSize / 2);
-      }
-    }
-
-    // displays player movement
-    Cell currentPlayerCell = this.player.currentPos;
-    for (Cell cell : this.player.visited) {
-      toReturn.placeImageXY(cell.makeLightBlueCell(cellSize),
-          cell.x * cellSize + cellSize / 2,
-          cell.y * cellSize + cellSize / 2);
-    }
-    toReturn.placeImageXY(currentPlayerCell.makeBlackCell(cellSize),
-        currentPlayerCell.x * cellSize + cellSize / 2,
-        currentPlayerCell.y * cellSize + cellSize / 2);
-
-    // displays backtracking when search finishes
-    if (this.doneSearching) {
-      for (Cell cell : this.backTrackPath) {
-        toReturn.placeImageXY(cell.makeDarkBlueCell(cellSize),
-            cell.x * cellSize + cellSize / 2,
-            cell.y * cellSize + cellSize / 2);
-      }
-      toReturn.placeImageXY(this.graph.cells.get(0).makeDarkBlueCell(cellSize),
-          0 * cellSize + cellSize / 2,
-          0 * cellSize + cellSize / 2);
+    if (this.scale < this.detailScale) {
+      this.drawDensity(toReturn);
+    } else {
+      this.drawCells(toReturn);
     }
 
     // outline around the window
@@ -336,164 +381,210 @@ class MazeWorld extends World {
         OutlineMode.OUTLINE, Color.black), 
         SCREEN_WIDTH / 2, screenHeight / 2);
 
-    // displays BFS/DFS statistics
+    // displays BFS/DFS/Dijkstra statistics
     toReturn.placeImageXY(new TextImage("BFS: " + Integer.toString(
-        this.bFSWrongMoves - this.bFSPathLength), 50, Color.black),
-        SCREEN_WIDTH / 4, screenHeight + 50);
+        this.bFSWrongMoves - this.bFSPathLength), 40, Color.black),
+        SCREEN_WIDTH / 6, screenHeight + 50);
 
     toReturn.placeImageXY(new TextImage("DFS: " + Integer.toString(
-        this.dFSWrongMoves - this.dFSPathLength), 50, Color.black),
-        3 * SCREEN_WIDTH / 4, screenHeight + 50);
+        this.dFSWrongMoves - this.dFSPathLength), 40, Color.black),
+        SCREEN_WIDTH / 2, screenHeight + 50);
+
+    toReturn.placeImageXY(new TextImage("Dijkstra: cost " + this.dijkstraCost + ", "
+        + this.dijkstraSettled + " settled", 20, Color.black),
+        5 * SCREEN_WIDTH / 6, screenHeight + 35);
+    toReturn.placeImageXY(new TextImage(String.format("%,.0f per second",
+        this.dijkstraSettledPerSecond()), 20, Color.black),
+        5 * SCREEN_WIDTH / 6, screenHeight + 65);
 
     return toReturn;
   }
 
-  // reconstructs path from DFS/BFS
-  void backtrackPath(Cell from, Cell to) {
-    if (this.currentCell != from) {
-      this.currentCell = this.cameFromEdge.get(this.currentCell);
-      if (this.currentCell == null) {
-        return;
+  // draws every cell in view with its walls, searches, player and path
+  void drawCells(WorldScene toReturn) {
+    int right = Math.min(this.mazeWidth, this.viewX + this.visibleColumns());
+    int bottom = Math.min(this.mazeHeight, this.viewY + this.visibleRows());
+
+    // colors each cell by its distance from the start, blue when near and red when far
+    if (this.showHeatmap && this.heatmap != null) {
+      for (int y = this.viewY; y < bottom; y++) {
+        for (int x = this.viewX; x < right; x++) {
+          int distance = this.heatmap.distances[this.mazeWidth * y + x];
+          if (distance >= 0) {
+            float far = (float) distance / Math.max(1, this.heatmap.maxDistance);
+            this.placeAtCell(toReturn, new RectangleImage(this.cellSize, this.cellSize,
+                OutlineMode.SOLID, Color.getHSBColor(0.66f * (1 - far), 0.5f, 1f)), x, y);
+          }
+        }
       }
-      this.backTrackPath.add(this.currentCell);
-      if (this.dfs && !this.bfs) {
-        this.dFSPathLength++;
-      } else {
-        this.bFSPathLength++;        
+    }
+
+    // places where BFS/DFS searches
+    if (!this.mazeGenerating && this.toggleAlreadySeen) {
+      this.placeAtCellsInView(toReturn, this.seenCells, this.makeSquare(6, Color.cyan));
+    }
+
+    // marks the start and the end
+    this.placeAtCell(toReturn, this.makeSquare(7, Color.green), 0, 0);
+    this.placeAtCell(toReturn, this.makeSquare(7, Color.red),
+        this.mazeWidth - 1, this.mazeHeight - 1);
+
+    // places the right and bottom wall of each cell unless its passage is open
+    WorldImage rightWall = new RectangleImage(1, this.cellSize + 1,
+        OutlineMode.OUTLINE, Color.black);
+    WorldImage bottomWall = new RectangleImage(this.cellSize + 1, 1,
+        OutlineMode.OUTLINE, Color.black);
+    for (int y = this.viewY; y < bottom; y++) {
+      for (int x = this.viewX; x < right; x++) {
+        int cell = this.mazeWidth * y + x;
+        if (!this.passages.passages.get(2 * cell)) {
+          this.placeAtCell(toReturn, rightWall, x, y, this.cellSize / 2, 0);
+        }
+        if (!this.passages.passages.get(2 * cell + 1)) {
+          this.placeAtCell(toReturn, bottomWall, x, y, 0, this.cellSize / 2);
+        }
       }
-    } else {
-      this.doneBackTracking = true;
-      return;
     }
 
-  }
+    // displays player movement
+    this.placeAtCellsInView(toReturn, this.visitedCells, this.makeSquare(6, Color.cyan));
+    this.placeAtCell(toReturn, this.makeSquare(5, Color.black),
+        this.player.currentPos % this.mazeWidth, this.player.currentPos / this.mazeWidth);
 
-  // runs backtrack immediately rather than on every tick
-  // (used to find how many wrong moves a user made by 
-  // comparing to the actual answer)
-  void backtrackPathImmediately(Cell from, Cell to) {
-    for (this.currentCell = to; !this.currentCell.equals(from); 
-        this.currentCell = this.cameFromEdge.get(this.currentCell)) {
-      if (this.currentCell == null) {
-        continue;
-      }
-      this.backTrackPath.add(this.currentCell);
+    // displays backtracking when search finishes
+    if (this.doneSearching) {
+      WorldImage pathSquare = this.makeSquare(6, Color.blue);
+      this.placeAtCellsInView(toReturn, this.pathCells, pathSquare);
+      this.placeAtCell(toReturn, pathSquare, 0, 0);
     }
   }
 
-  // finds edges in tree starting from this cell
-  ArrayList<Edge> edgesFromCell(Cell cell) {
-    ArrayList<Edge> toReturn = new ArrayList<Edge>();
-    for (Edge edge : this.kruskal.edgesInTree) {
-      if (edge.from.equals(cell)) {
-        toReturn.add(edge);
-      }
-    }
-    return toReturn;
+  // returns a solid square of the given color filling the given eighths of a cell,
+  // drawn once and placed at every cell it marks
+  WorldImage makeSquare(int eighths, Color color) {
+    return new RectangleImage(eighths * this.cellSize / 8, eighths * this.cellSize / 8,
+        OutlineMode.SOLID, color);
   }
 
-  //finds edges in tree going to this cell
-  ArrayList<Edge> edgesToCell(Cell cell) {
-    ArrayList<Edge> toReturn = new ArrayList<Edge>();
-    for (Edge edge : this.kruskal.edgesInTree) {
-      if (edge.to.equals(cell)) {
-        toReturn.add(edge);
+  // places the given image at every cell in view whose bit is set in the given cells,
+  // skipping from set bit to set bit along each visible row
+  void placeAtCellsInView(WorldScene scene, BitSet cells, WorldImage image) {
+    int right = Math.min(this.mazeWidth, this.viewX + this.visibleColumns());
+    int bottom = Math.min(this.mazeHeight, this.viewY + this.visibleRows());
+    for (int y = this.viewY; y < bottom; y++) {
+      int rowStart = this.mazeWidth * y;
+      for (int cell = cells.nextSetBit(rowStart + this.viewX);
+          cell >= 0 && cell < rowStart + right; cell = cells.nextSetBit(cell + 1)) {
+        this.placeAtCell(scene, image, cell - rowStart, y);
       }
     }
-    return toReturn;
   }
 
-  // adds the directions you can go from each cell
-  void addDirectionsToCell(Cell cell) {
-    ArrayList<Edge> edgesInTreeCopy = new ArrayList<Edge>();
-    for (Edge edge : this.kruskal.edgesInTree) {
-      edgesInTreeCopy.add(edge);
+  // draws the maze zoomed out as gray blocks, darker where more walls are standing,
+  // using the level of the density pyramid whose blocks are at least DETAIL_SCALE pixels
+  void drawDensity(WorldScene toReturn) {
+    int level = 1;
+    while (level < this.density.levels() - 1 && (1 << level) * this.scale < DETAIL_SCALE) {
+      level++;
     }
-
-    for (Iterator<Edge> iterator = edgesInTreeCopy.iterator(); iterator.hasNext();) {
-      Edge edge = iterator.next();
-      if (edge.from.x == cell.x - 1 && edge.from.y == cell.y 
-          && this.canGoToCell(edge.from, cell)) {
-        cell.left = edge.from;
-      }
-      else if (edge.from.y == cell.y - 1 && edge.from.x == cell.x 
-          && this.canGoToCell(edge.from, cell)) {
-        cell.top = edge.from;
-      }
-      else if (edge.to.x == cell.x + 1 && edge.to.y == cell.y
-          && this.canGoToCell(edge.to, cell)) {
-        cell.right = edge.to;
-      }
-      else if (edge.to.y == cell.y + 1 && edge.to.x == cell.x
-          && this.canGoToCell(edge.to, cell)) {
-        cell.bottom = edge.to;
-      }
+    if (level >= this.density.levels()) {
+      return;
     }
+    int blockCells = 1 << level;
+    double blockPixels = blockCells * this.scale;
+    int size = (int) Math.ceil(blockPixels);
+
+    int left = this.viewX >> level;
+    int top = this.viewY >> level;
+    int right = Math.min(this.density.levelWidth(level),
+        ((this.viewX + this.visibleColumns()) >> level) + 1);
+    int bottom = Math.min(this.density.levelHeight(level),
+        ((this.viewY + this.visibleRows()) >> level) + 1);
+    for (int by = top; by < bottom; by++) {
+      for (int bx = left; bx < right; bx++) {
+        int gray = (int) (255 * (1 - this.density.density(level, bx, by)));
+        double x = (bx * blockCells - this.viewX) * this.scale;
+        double y = (by * blockCells - this.viewY) * this.scale;
+        toReturn.placeImageXY(new RectangleImage(size, size, OutlineMode.SOLID,
+            new Color(gray, gray, gray)), (int) (x + blockPixels / 2), (int) (y + blockPixels / 2));
+      }
+    }
+
+    // marks the start, the end and the player so they can still be found
+    this.placeMarker(toReturn, 0, 0, Color.green);
+    this.placeMarker(toReturn, this.mazeWidth - 1, this.mazeHeight - 1, Color.red);
+    this.placeMarker(toReturn, this.player.currentPos % this.mazeWidth,
+        this.player.currentPos / this.mazeWidth, Color.black);
   }
 
-  //finds the path between two given cells using depth-first search
-  boolean hasPathBetweenDFS(Cell from, Cell to) {
-
-    // As long as the worklist isn't empty...
-    if (!this.worklistStack.isEmpty()) {
-      Cell next = this.worklistStack.remove();
-      if (next.equals(to)) {
-        this.doneSearching = true;
-        this.backtrackPath(from, to);
-        return true; // Success!
-      }
-      else if (this.alreadySeen.contains(next)) {
-        // do nothing: we've already seen this one
-      }
-      else {
-        for (Cell n : next.neighbors) {
-          if (this.alreadySeen.contains(n)) {
-            continue;
-          }
-          this.worklistStack.add(n);
-          this.cameFromEdge.put(n, next);
-        }
-        // add next to alreadySeen, since we're done with it
-        this.alreadySeen.addFirst(next);
-        this.dFSWrongMoves++;
-      }
+  // places a square of DETAIL_SCALE pixels over the cell at the given coordinates
+  void placeMarker(WorldScene toReturn, int x, int y, Color color) {
+    if (this.isVisible(x, y)) {
+      toReturn.placeImageXY(new RectangleImage(DETAIL_SCALE, DETAIL_SCALE,
+          OutlineMode.SOLID, color),
+          (int) ((x - this.viewX + 0.5) * this.scale),
+          (int) ((y - this.viewY + 0.5) * this.scale));
     }
-    // We haven't found the to vertex, and there are no more to try
-    return false;
   }
 
+  // EFFECT: clears the last search so a new one can start from the top left cell
+  void startSearch() {
+    this.doneSearching = false;
+    this.doneBackTracking = false;
+    this.cameFrom = new byte[this.mazeWidth * this.mazeHeight];
+    this.cameFrom[0] = FlatSolver.START;
+    this.currentCell = this.mazeWidth * this.mazeHeight - 1;
+    this.seenCells = new BitSet();
+    this.worklistQueue = new Queue<Integer>();
+    this.worklistStack = new Stack<Integer>();
+    this.pathCells = new BitSet();
+  }
 
-  // runs DFS immediately rather than on every tick
-  boolean hasPathBetweenDFSImmediately(Cell from, Cell to) {
-
-    this.alreadySeen = new ArrayDeque<Cell>();
-    this.worklistStack = new Stack<Cell>();
-    this.cameFromEdge = new HashMap<Cell, Cell>();
-
-    this.worklistStack.add(from);
-    // Initialize the worklist with the from vertex
+  // EFFECT: traces the path found by the last search one cell further back
+  // towards the top left cell
+  void backtrackPath() {
+    if (this.currentCell == 0) {
+      this.doneBackTracking = true;
+      return;
+    }
+    this.currentCell = this.passages.topology.neighbor(this.currentCell,
+        this.cameFrom[this.currentCell] - 1);
+    this.pathCells.set(this.currentCell);
+    if (this.dfs && !this.bfs) {
+      this.dFSPathLength++;
+    } else {
+      this.bFSPathLength++;
+    }
+  }
 
+  // takes one step of a depth-first search between the two given cells,
+  // returns whether it reached the second one
+  boolean hasPathBetweenDFS(int from, int to) {
+    ITopology topology = this.passages.topology;
     // As long as the worklist isn't empty...
-    while (!this.worklistStack.isEmpty()) {
-      Cell next = this.worklistStack.remove();
-      if (next.equals(to)) {
+    if (!this.worklistStack.isEmpty()) {
+      int next = this.worklistStack.remove();
+      if (next == to) {
         this.doneSearching = true;
-        this.backtrackPathImmediately(from, to);
+        this.backtrackPath();
         return true; // Success!
       }
-      else if (this.alreadySeen.contains(next)) {
+      else if (this.seenCells.get(next)) {
         // do nothing: we've already seen this one
       }
       else {
-        for (Cell n : next.neighbors) {
-          if (this.alreadySeen.contains(n)) {
+        int cellClass = topology.cellClass(next);
+        for (int direction = 0; direction < topology.directions(); direction++) {
+          int n = this.passages.openNeighbor(next, direction, cellClass);
+          if (n < 0 || this.seenCells.get(n)) {
             continue;
           }
           this.worklistStack.add(n);
-          this.cameFromEdge.put(n, next);
+          // the cell pushed last is taken first, so it keeps the last way back
+          this.cameFrom[n] = (byte) (topology.opposite(direction) + 1);
         }
-        // add next to alreadySeen, since we're done with it
-        this.alreadySeen.addFirst(next);
+        // mark next as seen, since we're done with it
+        this.seenCells.set(next);
         this.dFSWrongMoves++;
       }
     }
@@ -501,31 +592,36 @@ class MazeWorld extends World {
     return false;
   }
 
-  // finds the path between two given cells using breadth-first search
-  boolean hasPathBetweenBFS(Cell from, Cell to) {
-    // Initialize the worklist with the from vertex
-    this.worklistQueue.add(from);
+  // takes one step of a breadth-first search between the two given cells,
+  // returns whether it reached the second one
+  boolean hasPathBetweenBFS(int from, int to) {
+    ITopology topology = this.passages.topology;
     // As long as the worklist isn't empty...
     if (!this.worklistQueue.isEmpty()) {
-      Cell next = this.worklistQueue.remove();
-      if (next.equals(to)) {
+      int next = this.worklistQueue.remove();
+      if (next == to) {
         this.doneSearching = true;
-        this.backtrackPath(from, to);
+        this.backtrackPath();
         return true; // Success!
       }
-      else if (this.alreadySeen.contains(next)) {
+      else if (this.seenCells.get(next)) {
         // do nothing: we've already seen this one
       }
       else {
-        for (Cell n : next.neighbors) {
-          if (this.alreadySeen.contains(n)) {
+        int cellClass = topology.cellClass(next);
+        for (int direction = 0; direction < topology.directions(); direction++) {
+          int n = this.passages.openNeighbor(next, direction, cellClass);
+          if (n < 0 || this.seenCells.get(n)) {
             continue;
           }
           this.worklistQueue.add(n);
-          this.cameFromEdge.put(n, next);
+          // the first way to a cell is one of the shortest
+          if (this.cameFrom[n] == FlatSolver.UNSEEN) {
+            this.cameFrom[n] = (byte) (topology.opposite(direction) + 1);
+          }
         }
-        // add next to alreadySeen, since we're done with it
-        this.alreadySeen.addFirst(next);
+        // mark next as seen, since we're done with it
+        this.seenCells.set(next);
         this.bFSWrongMoves++;
       }
     }
@@ -535,119 +631,144 @@ class MazeWorld extends World {
 
   // runs this code every tick
   public void onTick() {
-    if (this.player.currentPos.equals(this.graph.cells.get(
-        this.mazeWidth * this.mazeHeight - 1))) {
+    int goal = this.mazeWidth * this.mazeHeight - 1;
+    if (this.player.currentPos == goal) {
       this.ended = true;
     }
 
     if (this.mazeGenerating) {
-      this.currentEdgeCount++;
-      this.mazeGenerating = this.kruskal.runKruskal(this.currentEdgeCount - 1);
-    } else {
-      if (!this.doneAddingNeighbors) {
-        this.addToCellNeighbors();
-      }
+      this.mazeGenerating = this.generate(this.replaySpeed);
+    } else if (!this.finished) {
+      this.finishMaze();
     }
 
     if (!this.doneSearching && this.dfs && !this.bfs) {
-      this.hasPathBetweenDFS(this.graph.cells.get(0),
-          this.graph.cells.get(this.mazeHeight * this.mazeWidth - 1));
+      this.hasPathBetweenDFS(0, goal);
     }
 
     if (!this.doneSearching && this.bfs && !this.dfs) {
-      this.hasPathBetweenBFS(this.graph.cells.get(0),
-          this.graph.cells.get(this.mazeHeight * this.mazeWidth - 1));
+      this.hasPathBetweenBFS(0, goal);
     }
 
     if (this.doneSearching && !this.doneBackTracking) {
-      this.backtrackPath(this.graph.cells.get(this.mazeHeight 
-          * this.mazeWidth - 1), this.graph.cells.get(0));
+      this.backtrackPath();
     }
   }
 
-  // adds the directions of each cell to its neighbors field
-  void addToCellNeighbors() {
-    for (Cell cell : this.graph.cells) {
-      this.addDirectionsToCell(cell);
+  // EFFECT: opens the loops of braid mode in the generated maze, numbers its solution path
+  // and measures the distances for the heatmap
+  void finishMaze() {
+    this.openLoops();
+    this.initSolutionPath();
+    this.heatmap = new DistanceMap(this.passages).run(0);
+    this.finished = true;
+  }
+
+  // opens the loops chosen for braid mode in the finished maze
+  void openLoops() {
+    IntQueue loops = this.passages.braid(this.braided ? this.braidFraction : 0, this.rand);
+    while (!loops.isEmpty()) {
+      this.removeWall(loops.remove());
     }
-    for (Cell cell : this.graph.cells) {
-      if (cell.right != null) {
-        cell.neighbors.add(cell.right);
-      }
-      if (cell.left != null) {
-        cell.neighbors.add(cell.left);
-      }
-      if (cell.bottom != null) {
-        cell.neighbors.add(cell.bottom);
-      }
-      if (cell.top != null) {
-        cell.neighbors.add(cell.top);
-      }
+  }
+
+  // finds the cheapest path from the top left to the bottom right cell
+  // with Dijkstra's algorithm, using the edge weights as the cost of each passage,
+  // and shows it like a finished BFS/DFS path
+  void runDijkstra() {
+    int cells = this.mazeWidth * this.mazeHeight;
+    FlatDijkstra dijkstra = new FlatDijkstra(this.passages, this.kruskal);
+    long start = System.nanoTime();
+    int[] path = dijkstra.path(0, cells - 1);
+    this.dijkstraNanos = System.nanoTime() - start;
+    this.dijkstraSettled = dijkstra.settled;
+    this.dijkstraCost = path.length > 0 ? dijkstra.distances[cells - 1] : 0;
+
+    this.seenCells = new BitSet();
+    this.pathCells = new BitSet();
+    for (int cell : path) {
+      this.pathCells.set(cell);
     }
-    this.doneAddingNeighbors = true;
+    this.bfs = false;
+    this.dfs = false;
+    this.doneSearching = true;
+    this.doneBackTracking = true;
   }
 
-  // returns whether a you can go from a given cell to a given cell
-  boolean canGoToCell(Cell from, Cell to) {
-    for (Edge e : this.kruskal.edgesInTree) {
-      if (e.equals(new Edge(from, to, e.weight)) 
-          || e.equals(new Edge(to, from, e.weight))) {
-        return true;
-      }
+  // returns how many cells the last Dijkstra's search settled per second
+  double dijkstraSettledPerSecond() {
+    return this.dijkstraNanos == 0 ? 0 : this.dijkstraSettled * 1e9 / this.dijkstraNanos;
+  }
+
+  // numbers the cells on the path between the top left and bottom right cells
+  // of the finished maze so that moves can be scored as they are made
+  void initSolutionPath() {
+    int cells = this.mazeWidth * this.mazeHeight;
+    int[] path = new FlatSolver(this.passages).path(0, cells - 1);
+
+    this.pathIndex = new int[cells];
+    Arrays.fill(this.pathIndex, -1);
+    for (int i = 0; i < path.length; i++) {
+      this.pathIndex[path[i]] = i;
+    }
+  }
+
+  // counts a player move between the given cells as on the solution path
+  // if it goes one step further along it, and off the path otherwise
+  void scoreMove(int from, int to) {
+    int fromIndex = this.pathIndex == null ? -1 : this.pathIndex[from];
+    if (fromIndex >= 0 && this.pathIndex[to] == fromIndex + 1) {
+      this.onPathMoves++;
+    } else {
+      this.offPathMoves++;
     }
-    return false;
+  }
+
+  // returns how many of the player's moves did not go further along the solution path
+  int wrongMoves() {
+    return this.offPathMoves;
+  }
+
+  // EFFECT: moves the player one cell in the given direction
+  // if the passage that way is open
+  void movePlayer(int direction) {
+    int from = this.player.currentPos;
+    if (!this.passages.isOpen(from, direction)) {
+      return;
+    }
+    int to = this.passages.topology.neighbor(from, direction);
+    this.visitedCells.set(from);
+    this.scoreMove(from, to);
+    this.player.currentPos = to;
+    this.playerMoves++;
+    this.keepPlayerInView();
   }
 
   // handles user key input
   public void onKeyEvent(String key) {
     // make new maze
     if (key.equals("r")) {
-      this.initGraph();
+      this.initRandom();
       this.initKruskal();
       this.ended = false;
     }
-    // move player down
-    else if (key.equals("down") && this.canGoToCell(this.player.currentPos, 
-        new Cell(this.player.currentPos.x, this.player.currentPos.y + 1))) {
-      this.player.visited.add(this.player.currentPos);
-      this.player.currentPos = new Cell(this.player.currentPos.x, 
-          this.player.currentPos.y + 1);
-      this.playerMoves++;
-    }
-    // move player up
-    else if (key.equals("up") && this.canGoToCell(this.player.currentPos, 
-        new Cell(this.player.currentPos.x, this.player.currentPos.y - 1))) {
-      this.player.visited.add(this.player.currentPos);
-      this.player.currentPos = new Cell(this.player.currentPos.x, 
-          this.player.currentPos.y - 1);
-      this.playerMoves++;
-    }
-    // move player right
-    else if (key.equals("right") && this.canGoToCell(this.player.currentPos, 
-        new Cell(this.player.currentPos.x + 1, this.player.currentPos.y))) {
-      this.player.visited.add(this.player.currentPos);
-      this.player.currentPos = new Cell(this.player.currentPos.x + 1, 
-          this.player.currentPos.y);
-      this.playerMoves++;
-    }
-    // move player left
-    else if (key.equals("left") && this.canGoToCell(this.player.currentPos, 
-        new Cell(this.player.currentPos.x - 1, this.player.currentPos.y))) {
-      this.player.visited.add(this.player.currentPos);
-      this.player.currentPos = new Cell(this.player.currentPos.x - 1, 
-          this.player.currentPos.y);
-      this.playerMoves++;
+    // move player right, down, left or up
+    else if (key.equals("right")) {
+      this.movePlayer(0);
+    }
+    else if (key.equals("down")) {
+      this.movePlayer(1);
+    }
+    else if (key.equals("left")) {
+      this.movePlayer(2);
+    }
+    else if (key.equals("up")) {
+      this.movePlayer(3);
     }
     // runs breadth-first search
     else if (key.equals("b") && !this.mazeGenerating) {
-      this.doneSearching = false;
-      this.doneBackTracking = false;
-      this.cameFromEdge = new HashMap<Cell, Cell>();
-      this.currentCell = this.graph.cells.get(this.mazeWidth * this.mazeHeight - 1);
-      this.alreadySeen = new ArrayDeque<Cell>();
-      this.worklistQueue = new Queue<Cell>();
-      this.worklistStack = new Stack<Cell>();
-      this.backTrackPath = new ArrayList<Cell>();
+      this.startSearch();
+      this.worklistQueue.add(0);
       this.bfs = true;
       this.dfs = false;
       this.bFSWrongMoves = 0;
@@ -655,28 +776,70 @@ class MazeWorld extends World {
     }
     // runs depth-first search
     else if (key.equals("d") && !this.mazeGenerating) {
-      this.doneSearching = false;
-      this.doneBackTracking = false;
-      this.cameFromEdge = new HashMap<Cell, Cell>();
-      this.currentCell = this.graph.cells.get(this.mazeWidth * this.mazeHeight - 1);
-      this.alreadySeen = new ArrayDeque<Cell>();
-      this.worklistQueue = new Queue<Cell>();
-      this.worklistStack = new Stack<Cell>();
-      this.worklistStack.add(this.graph.cells.get(0));
-      this.backTrackPath = new ArrayList<Cell>();
+      this.startSearch();
+      this.worklistStack.add(0);
       this.dfs = true;
       this.bfs = false;
       this.dFSWrongMoves = 0;
       this.dFSPathLength = 0;
     }
+    // runs Dijkstra's algorithm
+    else if (key.equals("w") && this.finished) {
+      this.runDijkstra();
+    }
+    // turns braid mode on or off and makes a new maze
+    else if (key.equals("o")) {
+      this.braided = !this.braided;
+      this.initRandom();
+      this.initKruskal();
+      this.ended = false;
+    }
+    // toggles the distance heatmap
+    else if (key.equals("h")) {
+      this.showHeatmap = !this.showHeatmap;
+    }
     // toggles viewing of nodes visited by search
     else if (key.equals("t")) {
       this.toggleAlreadySeen = !this.toggleAlreadySeen;
     }
     // skips animation of maze generation
     else if (key.equals("s")) {
-      this.kruskal.runKruskalImmediately();
+      this.generate(Long.MAX_VALUE);
       this.mazeGenerating = false;
     }
+    // speeds up animation of maze generation
+    else if (key.equals("]")) {
+      this.replaySpeed = Math.min(1 << 20, this.replaySpeed * 2);
+    }
+    // slows down animation of maze generation
+    else if (key.equals("[")) {
+      this.replaySpeed = Math.max(1, this.replaySpeed / 2);
+    }
+    // zooms in
+    else if (key.equals("=")) {
+      this.setScale(this.scale * 2);
+      this.keepPlayerInView();
+    }
+    // zooms out
+    else if (key.equals("-")) {
+      this.setScale(this.scale / 2);
+    }
+    // zooms out to fit the whole maze
+    else if (key.equals("f")) {
+      this.setScale(this.fitScale);
+    }
+    // scrolls the view a quarter of the window up, left, down or right
+    else if (key.equals("i")) {
+      this.moveView(this.viewX, this.viewY - Math.max(1, this.visibleRows() / 4));
+    }
+    else if (key.equals("j")) {
+      this.moveView(this.viewX - Math.max(1, this.visibleColumns() / 4), this.viewY);
+    }
+    else if (key.equals("k")) {
+      this.moveView(this.viewX, this.viewY + Math.max(1, this.visibleRows() / 4));
+    }
+    else if (key.equals("l")) {
+      this.moveView(this.viewX + Math.max(1, this.visibleColumns() / 4), this.viewY);
+    }
   }
-}
\ No newline at end of file
+}
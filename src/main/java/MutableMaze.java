@@ -0,0 +1,851 @@
+import java.util.Arrays;
+import java.util.BitSet;
+
+// Represents a forest of rooted trees over cells 0 to n - 1 as a link-cut tree:
+// each tree is split into paths, and each path is kept in a splay tree ordered by depth.
+// Linking, cutting, checking connectivity, measuring the path between two cells and
+// counting the cells of a tree all take amortized O(log n).
+// Everything is kept in int arrays indexed by cell
+class LinkCutForest {
+  int[] left;
+  int[] right;
+  // the splay tree parent, or for the root of a splay tree the cell its path hangs from
+  int[] parent;
+  // the number of cells in the splay subtree
+  int[] size;
+  // the number of cells in the trees whose paths hang from this cell
+  int[] hanging;
+  // the number of cells in the splay subtree and every tree hanging from it
+  int[] total;
+  // whether the splay subtree still has to be reversed
+  boolean[] flipped;
+  int[] stack;
+
+  LinkCutForest(int cells) {
+    this.left = new int[cells];
+    this.right = new int[cells];
+    this.parent = new int[cells];
+    this.size = new int[cells];
+    this.hanging = new int[cells];
+    this.total = new int[cells];
+    this.flipped = new boolean[cells];
+    this.stack = new int[cells];
+    Arrays.fill(this.left, -1);
+    Arrays.fill(this.right, -1);
+    Arrays.fill(this.parent, -1);
+    Arrays.fill(this.size, 1);
+    Arrays.fill(this.total, 1);
+  }
+
+  // returns whether the given cell is the root of its splay tree
+  boolean isSplayRoot(int cell) {
+    int p = this.parent[cell];
+    return p == -1 || (this.left[p] != cell && this.right[p] != cell);
+  }
+
+  // EFFECT: passes a pending reversal of the given cell's subtree down to its children
+  void pushDown(int cell) {
+    if (this.flipped[cell]) {
+      int swap = this.left[cell];
+      this.left[cell] = this.right[cell];
+      this.right[cell] = swap;
+      if (this.left[cell] != -1) {
+        this.flipped[this.left[cell]] ^= true;
+      }
+      if (this.right[cell] != -1) {
+        this.flipped[this.right[cell]] ^= true;
+      }
+      this.flipped[cell] = false;
+    }
+  }
+
+  // EFFECT: recomputes the sizes of the given cell's subtree from its children
+  void update(int cell) {
+    int l = this.left[cell];
+    int r = this.right[cell];
+    this.size[cell] = 1 + (l == -1 ? 0 : this.size[l]) + (r == -1 ? 0 : this.size[r]);
+    this.total[cell] = 1 + this.hanging[cell]
+        + (l == -1 ? 0 : this.total[l]) + (r == -1 ? 0 : this.total[r]);
+  }
+
+  // EFFECT: rotates the given cell above its splay parent
+  void rotate(int cell) {
+    int p = this.parent[cell];
+    int g = this.parent[p];
+    boolean parentWasRoot = this.isSplayRoot(p);
+    if (this.left[p] == cell) {
+      this.left[p] = this.right[cell];
+      if (this.right[cell] != -1) {
+        this.parent[this.right[cell]] = p;
+      }
+      this.right[cell] = p;
+    } else {
+      this.right[p] = this.left[cell];
+      if (this.left[cell] != -1) {
+        this.parent[this.left[cell]] = p;
+      }
+      this.left[cell] = p;
+    }
+    this.parent[p] = cell;
+    this.parent[cell] = g;
+    if (!parentWasRoot) {
+      if (this.left[g] == p) {
+        this.left[g] = cell;
+      } else {
+        this.right[g] = cell;
+      }
+    }
+    this.update(p);
+    this.update(cell);
+  }
+
+  // EFFECT: moves the given cell to the root of its splay tree
+  void splay(int cell) {
+    int top = 0;
+    this.stack[top++] = cell;
+    for (int c = cell; !this.isSplayRoot(c); c = this.parent[c]) {
+      this.stack[top++] = this.parent[c];
+    }
+    while (top > 0) {
+      this.pushDown(this.stack[--top]);
+    }
+    while (!this.isSplayRoot(cell)) {
+      int p = this.parent[cell];
+      if (!this.isSplayRoot(p)) {
+        int g = this.parent[p];
+        if ((this.left[g] == p) == (this.left[p] == cell)) {
+          this.rotate(p);
+        } else {
+          this.rotate(cell);
+        }
+      }
+      this.rotate(cell);
+    }
+  }
+
+  // EFFECT: makes the path from the root of its tree to the given cell one splay tree,
+  // with the given cell at its root
+  void access(int cell) {
+    int last = -1;
+    for (int c = cell; c != -1; c = this.parent[c]) {
+      this.splay(c);
+      // the old deeper part of the path now hangs from c, and last no longer does
+      if (this.right[c] != -1) {
+        this.hanging[c] += this.total[this.right[c]];
+      }
+      if (last != -1) {
+        this.hanging[c] -= this.total[last];
+      }
+      this.right[c] = last;
+      this.update(c);
+      last = c;
+    }
+    this.splay(cell);
+  }
+
+  // EFFECT: makes the given cell the root of its tree
+  void makeRoot(int cell) {
+    this.access(cell);
+    this.flipped[cell] ^= true;
+  }
+
+  // returns the root of the given cell's tree
+  int findRoot(int cell) {
+    this.access(cell);
+    int root = cell;
+    this.pushDown(root);
+    while (this.left[root] != -1) {
+      root = this.left[root];
+      this.pushDown(root);
+    }
+    this.splay(root);
+    return root;
+  }
+
+  // returns whether the two cells are in the same tree
+  boolean connected(int a, int b) {
+    return a == b || this.findRoot(a) == this.findRoot(b);
+  }
+
+  // EFFECT: joins the trees of two cells that are not connected with an edge between them
+  void link(int a, int b) {
+    this.makeRoot(a);
+    this.access(b);
+    this.parent[a] = b;
+    this.hanging[b] += this.total[a];
+    this.update(b);
+  }
+
+  // EFFECT: removes the edge between two cells, returns whether there was one
+  boolean cut(int a, int b) {
+    this.makeRoot(a);
+    this.access(b);
+    if (this.left[b] != a || this.left[a] != -1 || this.right[a] != -1) {
+      return false;
+    }
+    this.left[b] = -1;
+    this.parent[a] = -1;
+    this.update(b);
+    return true;
+  }
+
+  // returns the number of edges on the path between two connected cells
+  int pathLength(int a, int b) {
+    this.makeRoot(a);
+    this.access(b);
+    return this.size[b] - 1;
+  }
+
+  // returns the number of cells in the given cell's tree
+  int treeSize(int cell) {
+    this.makeRoot(cell);
+    return this.total[cell];
+  }
+
+  // returns the cells on the path between two connected cells, in order
+  int[] path(int a, int b) {
+    this.makeRoot(a);
+    this.access(b);
+    int[] path = new int[this.size[b]];
+    int found = 0;
+    int top = 0;
+    int cell = b;
+    // in-order walk of b's splay tree, which holds the path sorted by depth
+    while (cell != -1 || top > 0) {
+      while (cell != -1) {
+        this.pushDown(cell);
+        this.stack[top++] = cell;
+        cell = this.left[cell];
+      }
+      cell = this.stack[--top];
+      path[found++] = cell;
+      cell = this.right[cell];
+    }
+    return path;
+  }
+}
+
+// Represents a map from non-negative ints to ints as an open-addressing hash table
+// with linear probing, at two int slots per entry, half of them kept empty
+class IntMap {
+  // the key in each slot, or -1 for an empty slot
+  int[] keys;
+  int[] values;
+  int size;
+
+  IntMap() {
+    this.keys = new int[16];
+    this.values = new int[16];
+    Arrays.fill(this.keys, -1);
+  }
+
+  // returns the slot where the given key is or would go
+  int slot(int key) {
+    int mask = this.keys.length - 1;
+    int hash = key * 0x9E3779B9;
+    int slot = (hash ^ (hash >>> 16)) & mask;
+    while (this.keys[slot] != -1 && this.keys[slot] != key) {
+      slot = (slot + 1) & mask;
+    }
+    return slot;
+  }
+
+  // returns the value of the given key, or -1 if it has none
+  int get(int key) {
+    int slot = this.slot(key);
+    return this.keys[slot] == -1 ? -1 : this.values[slot];
+  }
+
+  // EFFECT: sets the value of the given key
+  void put(int key, int value) {
+    if (2 * (this.size + 1) > this.keys.length) {
+      int[] oldKeys = this.keys;
+      int[] oldValues = this.values;
+      this.keys = new int[oldKeys.length * 2];
+      this.values = new int[oldKeys.length * 2];
+      Arrays.fill(this.keys, -1);
+      for (int i = 0; i < oldKeys.length; i++) {
+        if (oldKeys[i] != -1) {
+          int slot = this.slot(oldKeys[i]);
+          this.keys[slot] = oldKeys[i];
+          this.values[slot] = oldValues[i];
+        }
+      }
+    }
+    int slot = this.slot(key);
+    if (this.keys[slot] == -1) {
+      this.keys[slot] = key;
+      this.size++;
+    }
+    this.values[slot] = value;
+  }
+
+  // returns the value of the given key, or -1 if it has none
+  // EFFECT: removes the key, moving back the keys after it that probed past its slot
+  int remove(int key) {
+    int mask = this.keys.length - 1;
+    int hole = this.slot(key);
+    if (this.keys[hole] == -1) {
+      return -1;
+    }
+    int value = this.values[hole];
+    for (int next = (hole + 1) & mask; this.keys[next] != -1; next = (next + 1) & mask) {
+      int hash = this.keys[next] * 0x9E3779B9;
+      int home = (hash ^ (hash >>> 16)) & mask;
+      // the key at next may move into the hole unless its home slot lies after the hole
+      if (((next - home) & mask) >= ((next - hole) & mask)) {
+        this.keys[hole] = this.keys[next];
+        this.values[hole] = this.values[next];
+        hole = next;
+      }
+    }
+    this.keys[hole] = -1;
+    this.size--;
+    return value;
+  }
+}
+
+// Represents a forest over cells 0 to n - 1 as Euler tours: each tree is the cyclic
+// sequence of its cells and of both directions of each of its edges, kept in a splay
+// tree that cuts the cycle open anywhere. Every node carries flags, and every splay
+// subtree knows the flags of its nodes and how many cells it holds, so linking, cutting,
+// checking connectivity, counting the cells of a tree and finding a flagged cell in a tree
+// all take amortized O(log n).
+// A dense forest has a node for every cell up front, with node c for cell c, and finds
+// the nodes of an edge by its passage index. A sparse forest only makes nodes for
+// the cells and edges that reach it, and finds them through IntMaps
+class EulerTourForest {
+  // the node of each cell of a sparse forest
+  IntMap cellNodes;
+  // the first node of the pair for each passage of a dense forest, or -1
+  int[] edgeNodes;
+  // the first node of the pair for each passage of a sparse forest
+  IntMap sparseEdgeNodes;
+
+  // the cell of each node, or -1 for a node of an edge direction
+  int[] cellOf;
+  int[] left;
+  int[] right;
+  int[] parent;
+  // the number of cell nodes in the splay subtree
+  int[] count;
+  byte[] flags;
+  // the flags of every node in the splay subtree, or'd together
+  byte[] subtreeFlags;
+  int nodeCount;
+  // the first nodes of freed pairs of edge nodes, as a stack
+  int[] freePairs;
+  int freeCount;
+
+  // a dense forest over the given number of cells with the given number of passage indices
+  EulerTourForest(int cells, int passages) {
+    this.allocate(cells + 2 * Math.max(cells - 1, 0));
+    for (int cell = 0; cell < cells; cell++) {
+      this.newNode(cell);
+    }
+    this.edgeNodes = new int[passages];
+    Arrays.fill(this.edgeNodes, -1);
+  }
+
+  // a sparse forest with no cells in it yet
+  EulerTourForest() {
+    this.allocate(16);
+    this.cellNodes = new IntMap();
+    this.sparseEdgeNodes = new IntMap();
+  }
+
+  // EFFECT: makes room for the given number of nodes
+  void allocate(int capacity) {
+    this.cellOf = new int[capacity];
+    this.left = new int[capacity];
+    this.right = new int[capacity];
+    this.parent = new int[capacity];
+    this.count = new int[capacity];
+    this.flags = new byte[capacity];
+    this.subtreeFlags = new byte[capacity];
+    this.freePairs = new int[16];
+  }
+
+  // returns a new node on its own for the given cell, or -1 for an edge direction
+  int newNode(int cell) {
+    if (this.nodeCount == this.cellOf.length) {
+      int capacity = this.nodeCount * 2;
+      this.cellOf = Arrays.copyOf(this.cellOf, capacity);
+      this.left = Arrays.copyOf(this.left, capacity);
+      this.right = Arrays.copyOf(this.right, capacity);
+      this.parent = Arrays.copyOf(this.parent, capacity);
+      this.count = Arrays.copyOf(this.count, capacity);
+      this.flags = Arrays.copyOf(this.flags, capacity);
+      this.subtreeFlags = Arrays.copyOf(this.subtreeFlags, capacity);
+    }
+    int node = this.nodeCount++;
+    this.reset(node, cell);
+    return node;
+  }
+
+  // EFFECT: makes the given node a node on its own for the given cell,
+  // or -1 for an edge direction
+  void reset(int node, int cell) {
+    this.cellOf[node] = cell;
+    this.left[node] = -1;
+    this.right[node] = -1;
+    this.parent[node] = -1;
+    this.count[node] = cell < 0 ? 0 : 1;
+    this.flags[node] = 0;
+    this.subtreeFlags[node] = 0;
+  }
+
+  // returns the node of the given cell, making one if there is none and create is true,
+  // or -1 if there is none
+  int node(int cell, boolean create) {
+    if (this.cellNodes == null) {
+      return cell;
+    }
+    int node = this.cellNodes.get(cell);
+    if (node != -1 || !create) {
+      return node;
+    }
+    int made = this.newNode(cell);
+    this.cellNodes.put(cell, made);
+    return made;
+  }
+
+  // EFFECT: recomputes the count and flags of the given node's subtree from its children
+  void update(int node) {
+    int l = this.left[node];
+    int r = this.right[node];
+    int nodeCount = this.cellOf[node] < 0 ? 0 : 1;
+    byte nodeFlags = this.flags[node];
+    if (l != -1) {
+      nodeCount += this.count[l];
+      nodeFlags |= this.subtreeFlags[l];
+    }
+    if (r != -1) {
+      nodeCount += this.count[r];
+      nodeFlags |= this.subtreeFlags[r];
+    }
+    this.count[node] = nodeCount;
+    this.subtreeFlags[node] = nodeFlags;
+  }
+
+  // EFFECT: rotates the given node above its parent
+  void rotate(int node) {
+    int p = this.parent[node];
+    int g = this.parent[p];
+    if (this.left[p] == node) {
+      this.left[p] = this.right[node];
+      if (this.right[node] != -1) {
+        this.parent[this.right[node]] = p;
+      }
+      this.right[node] = p;
+    } else {
+      this.right[p] = this.left[node];
+      if (this.left[node] != -1) {
+        this.parent[this.left[node]] = p;
+      }
+      this.left[node] = p;
+    }
+    this.parent[p] = node;
+    this.parent[node] = g;
+    if (g != -1) {
+      if (this.left[g] == p) {
+        this.left[g] = node;
+      } else {
+        this.right[g] = node;
+      }
+    }
+    this.update(p);
+    this.update(node);
+  }
+
+  // EFFECT: moves the given node to the root of its splay tree
+  void splay(int node) {
+    while (this.parent[node] != -1) {
+      int p = this.parent[node];
+      int g = this.parent[p];
+      if (g != -1) {
+        if ((this.left[g] == p) == (this.left[p] == node)) {
+          this.rotate(p);
+        } else {
+          this.rotate(node);
+        }
+      }
+      this.rotate(node);
+    }
+  }
+
+  // returns the splay tree made of the tour of the first one followed by the second,
+  // either of which may be -1 for an empty tour
+  int join(int first, int second) {
+    if (first == -1) {
+      return second;
+    }
+    if (second == -1) {
+      return first;
+    }
+    int last = first;
+    while (this.right[last] != -1) {
+      last = this.right[last];
+    }
+    this.splay(last);
+    this.right[last] = second;
+    this.parent[second] = last;
+    this.update(last);
+    return last;
+  }
+
+  // returns the root of the splay tree whose tour is the given node's tour
+  // turned to start at that node
+  int startAt(int node) {
+    this.splay(node);
+    int before = this.left[node];
+    if (before == -1) {
+      return node;
+    }
+    this.left[node] = -1;
+    this.parent[before] = -1;
+    this.update(node);
+    return this.join(node, before);
+  }
+
+  // returns whether the two cells are in the same tree
+  boolean connected(int a, int b) {
+    if (a == b) {
+      return true;
+    }
+    int nodeA = this.node(a, false);
+    int nodeB = this.node(b, false);
+    if (nodeA < 0 || nodeB < 0) {
+      return false;
+    }
+    this.splay(nodeA);
+    int root = nodeB;
+    while (this.parent[root] != -1) {
+      root = this.parent[root];
+    }
+    this.splay(nodeB);
+    return root == nodeA;
+  }
+
+  // returns the number of cells in the given cell's tree
+  int treeSize(int cell) {
+    int node = this.node(cell, false);
+    if (node < 0) {
+      return 1;
+    }
+    this.splay(node);
+    return this.count[node];
+  }
+
+  // EFFECT: joins the trees of two cells that are not connected with the given passage
+  void link(int edge, int a, int b) {
+    int tourA = this.startAt(this.node(a, true));
+    int tourB = this.startAt(this.node(b, true));
+    int pair;
+    if (this.freeCount > 0) {
+      pair = this.freePairs[--this.freeCount];
+      this.reset(pair, -1);
+      this.reset(pair + 1, -1);
+    } else {
+      pair = this.newNode(-1);
+      this.newNode(-1);
+    }
+    if (this.edgeNodes != null) {
+      this.edgeNodes[edge] = pair;
+    } else {
+      this.sparseEdgeNodes.put(edge, pair);
+    }
+    // a, then the way to b, b's tour, and the way back
+    this.join(this.join(this.join(tourA, pair), tourB), pair + 1);
+  }
+
+  // EFFECT: removes the given passage, which is in this forest, splitting its tree in two
+  void cut(int edge) {
+    int pair;
+    if (this.edgeNodes != null) {
+      pair = this.edgeNodes[edge];
+      this.edgeNodes[edge] = -1;
+    } else {
+      pair = this.sparseEdgeNodes.remove(edge);
+    }
+    this.splay(pair);
+    int before = this.left[pair];
+    int after = this.right[pair];
+    if (before != -1) {
+      this.parent[before] = -1;
+    }
+    if (after != -1) {
+      this.parent[after] = -1;
+    }
+    int back = pair + 1;
+    int root = back;
+    while (this.parent[root] != -1) {
+      root = this.parent[root];
+    }
+    this.splay(back);
+    if (this.left[back] != -1) {
+      this.parent[this.left[back]] = -1;
+    }
+    if (this.right[back] != -1) {
+      this.parent[this.right[back]] = -1;
+    }
+    // the tour between the two directions is one tree, and what is around them the other
+    if (root == after) {
+      this.join(before, this.right[back]);
+    } else {
+      this.join(this.left[back], after);
+    }
+    if (this.freeCount == this.freePairs.length) {
+      this.freePairs = Arrays.copyOf(this.freePairs, this.freeCount * 2);
+    }
+    this.freePairs[this.freeCount++] = pair;
+  }
+
+  // EFFECT: sets the flags of the given cell
+  void setFlags(int cell, byte cellFlags) {
+    int node = this.node(cell, cellFlags != 0);
+    if (node < 0) {
+      return;
+    }
+    this.splay(node);
+    this.flags[node] = cellFlags;
+    this.update(node);
+  }
+
+  // returns a cell in the given cell's tree with the given flag set, or -1 if there is none
+  int findFlagged(int cell, byte flag) {
+    int node = this.node(cell, false);
+    if (node < 0) {
+      return -1;
+    }
+    this.splay(node);
+    if ((this.subtreeFlags[node] & flag) == 0) {
+      return -1;
+    }
+    while ((this.flags[node] & flag) == 0) {
+      int l = this.left[node];
+      node = l != -1 && (this.subtreeFlags[l] & flag) != 0 ? l : this.right[node];
+    }
+    this.splay(node);
+    return this.cellOf[node];
+  }
+}
+
+// Represents a maze whose walls can be opened and closed while it is played.
+// The open passages are kept as a spanning forest in a LinkCutForest, for the path from
+// start to goal, plus a set of extra passages that close loops.
+// To find a replacement when a forest passage closes, every open passage also has a level
+// from 0 to log n, and level i has an EulerTourForest of the forest passages at level i
+// or above, so a tree of level i never has more than n / 2^i cells (Holm, de Lichtenberg
+// and Thorup's dynamic connectivity). Closing a forest passage looks through the smaller
+// half at each level from the passage's level down, raising every passage it looks at
+// that does not reconnect the halves, so a passage is looked at most log n times
+// in its life. Opening a wall, finding whether the goal can be reached and finding
+// the length of the forest path take amortized O(log n), and closing one O(log^2 n).
+// Level 0 costs about 75 bytes per cell, and each level above up to as much again
+// for the cells whose passages were raised to it, O(n log n) in all
+class MutableMaze {
+  // a cell with a forest passage at the level
+  static final byte TREE = 1;
+  // a cell with an extra passage at the level
+  static final byte EXTRA = 2;
+
+  FlatMaze maze;
+  ITopology topology;
+  LinkCutForest forest;
+  // open passages that are not in the forest because their cells were already connected
+  BitSet extraPassages;
+  int extraCount;
+  // the level of every open passage
+  byte[] passageLevels;
+  // the forest passages at each level or above, made when a passage first reaches it
+  EulerTourForest[] levels;
+  int start;
+  int goal;
+
+  MutableMaze(FlatMaze maze, int start, int goal) {
+    this.maze = maze;
+    this.topology = maze.topology;
+    int cells = this.topology.cellCount();
+    int slots = cells * this.topology.forwardDirections();
+    this.forest = new LinkCutForest(cells);
+    this.extraPassages = new BitSet();
+    this.passageLevels = new byte[slots];
+    this.levels = new EulerTourForest[32 - Integer.numberOfLeadingZeros(Math.max(cells, 1))];
+    this.levels[0] = new EulerTourForest(cells, slots);
+    this.start = start;
+    this.goal = goal;
+
+    int forward = this.topology.forwardDirections();
+    for (int edge = maze.passages.nextSetBit(0); edge >= 0;
+        edge = maze.passages.nextSetBit(edge + 1)) {
+      int from = edge / forward;
+      this.add(edge, from, this.topology.neighbor(from, edge % forward));
+    }
+  }
+
+  // returns the EulerTourForest of the given level, making it if there is none yet
+  EulerTourForest level(int level) {
+    if (this.levels[level] == null) {
+      this.levels[level] = new EulerTourForest();
+    }
+    return this.levels[level];
+  }
+
+  // EFFECT: adds the given open passage between two cells at level 0,
+  // to the forest if they are not connected yet and as an extra passage if they are
+  void add(int edge, int from, int to) {
+    if (this.levels[0].connected(from, to)) {
+      this.extraPassages.set(edge);
+      this.extraCount++;
+    } else {
+      this.levels[0].link(edge, from, to);
+      this.forest.link(from, to);
+    }
+    this.updateFlags(from, 0);
+    this.updateFlags(to, 0);
+  }
+
+  // EFFECT: sets the flags of the given cell in the given level
+  // from the open passages around it at that level
+  void updateFlags(int cell, int level) {
+    byte flags = 0;
+    for (int direction = 0; direction < this.topology.directions(); direction++) {
+      int edge = this.maze.edge(cell, direction);
+      if (edge >= 0 && this.maze.passages.get(edge) && this.passageLevels[edge] == level) {
+        flags |= this.extraPassages.get(edge) ? EXTRA : TREE;
+      }
+    }
+    if (this.levels[level] != null) {
+      this.levels[level].setFlags(cell, flags);
+    }
+  }
+
+  // EFFECT: opens the wall of the given cell in the given direction,
+  // returns whether it was closed
+  boolean openWall(int cell, int direction) {
+    int edge = this.maze.edge(cell, direction);
+    if (edge < 0 || this.maze.passages.get(edge)) {
+      return false;
+    }
+    this.maze.passages.set(edge);
+    this.add(edge, cell, this.topology.neighbor(cell, direction));
+    return true;
+  }
+
+  // EFFECT: closes the wall of the given cell in the given direction,
+  // returns whether it was open
+  boolean closeWall(int cell, int direction) {
+    int edge = this.maze.edge(cell, direction);
+    if (edge < 0 || !this.maze.passages.get(edge)) {
+      return false;
+    }
+    int other = this.topology.neighbor(cell, direction);
+    int level = this.passageLevels[edge];
+    this.maze.passages.clear(edge);
+    this.passageLevels[edge] = 0;
+    boolean extra = this.extraPassages.get(edge);
+    if (extra) {
+      this.extraPassages.clear(edge);
+      this.extraCount--;
+    } else {
+      for (int i = 0; i <= level; i++) {
+        this.levels[i].cut(edge);
+      }
+      this.forest.cut(cell, other);
+    }
+    this.updateFlags(cell, level);
+    this.updateFlags(other, level);
+    if (extra || this.extraCount == 0) {
+      return true;
+    }
+    for (int i = level; i >= 0; i--) {
+      if (this.reconnect(cell, other, i)) {
+        return true;
+      }
+    }
+    return true;
+  }
+
+  // returns whether an extra passage at the given level joins the trees
+  // of the two given cells at that level again
+  // EFFECT: makes the first such passage it finds a forest passage, and raises
+  // every other passage at this level inside the smaller tree one level up
+  boolean reconnect(int a, int b, int level) {
+    EulerTourForest tours = this.levels[level];
+    int side = tours.treeSize(a) <= tours.treeSize(b) ? a : b;
+    // the smaller tree has at most half the cells of the tree it came from,
+    // so its forest passages can move up a level and keep the size bound there
+    for (int cell = tours.findFlagged(side, TREE); cell >= 0;
+        cell = tours.findFlagged(side, TREE)) {
+      for (int direction = 0; direction < this.topology.directions(); direction++) {
+        int edge = this.maze.edge(cell, direction);
+        if (edge >= 0 && this.maze.passages.get(edge) && !this.extraPassages.get(edge)
+            && this.passageLevels[edge] == level) {
+          int next = this.topology.neighbor(cell, direction);
+          this.passageLevels[edge]++;
+          this.level(level + 1).link(edge, cell, next);
+          this.updateFlags(next, level);
+          this.updateFlags(next, level + 1);
+        }
+      }
+      this.updateFlags(cell, level);
+      this.updateFlags(cell, level + 1);
+    }
+
+    for (int cell = tours.findFlagged(side, EXTRA); cell >= 0;
+        cell = tours.findFlagged(side, EXTRA)) {
+      for (int direction = 0; direction < this.topology.directions(); direction++) {
+        int edge = this.maze.edge(cell, direction);
+        if (edge < 0 || !this.extraPassages.get(edge) || this.passageLevels[edge] != level) {
+          continue;
+        }
+        int next = this.topology.neighbor(cell, direction);
+        if (!tours.connected(cell, next)) {
+          this.extraPassages.clear(edge);
+          this.extraCount--;
+          for (int i = 0; i <= level; i++) {
+            this.levels[i].link(edge, cell, next);
+          }
+          this.forest.link(cell, next);
+          // passages of this cell looked at before it may have been raised
+          this.updateFlags(cell, level);
+          this.updateFlags(cell, level + 1);
+          this.updateFlags(next, level);
+          return true;
+        }
+        // both ends are in the smaller tree
+        this.passageLevels[edge]++;
+        this.level(level + 1);
+        this.updateFlags(next, level);
+        this.updateFlags(next, level + 1);
+      }
+      this.updateFlags(cell, level);
+      this.updateFlags(cell, level + 1);
+    }
+    return false;
+  }
+
+  // returns whether the goal can be reached from the start
+  boolean isSolvable() {
+    return this.levels[0].connected(this.start, this.goal);
+  }
+
+  // returns the number of moves on the forest path from start to goal,
+  // or -1 if the goal cannot be reached. With loops open there may be shorter paths
+  int pathLength() {
+    if (!this.isSolvable()) {
+      return -1;
+    }
+    return this.forest.pathLength(this.start, this.goal);
+  }
+
+  // returns the cells on the forest path from start to goal,
+  // or an empty array if the goal cannot be reached
+  int[] path() {
+    if (!this.isSolvable()) {
+      return new int[0];
+    }
+    return this.forest.path(this.start, this.goal);
+  }
+}
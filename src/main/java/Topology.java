@@ -0,0 +1,245 @@
+// Represents the shape of a maze as cells numbered 0 to cellCount() - 1.
+// Directions 0 to forwardDirections() - 1 are the forward directions,
+// and direction d + forwardDirections() is the opposite of direction d
+interface ITopology {
+  // returns the number of cells in this topology
+  int cellCount();
+
+  // returns the number of directions a cell can connect in
+  int directions();
+
+  // returns the number of forward directions, each edge is owned
+  // by the cell it leaves in a forward direction
+  int forwardDirections();
+
+  // returns the cell next to the given cell in the given direction,
+  // or -1 if there is none
+  int neighbor(int cell, int direction);
+
+  // returns the class of the given cell, which callers looking in every direction
+  // from one cell can work out once and pass to the three-argument neighbor
+  int cellClass(int cell);
+
+  // returns the cell next to the given cell, whose class is given, in the given direction,
+  // or -1 if there is none
+  int neighbor(int cell, int direction, int cellClass);
+
+  // returns the direction opposite the given direction
+  int opposite(int direction);
+}
+
+// Represents a topology laid out as levels of rows of cells, which looks up
+// neighbors in a table of offsets precomputed for every class of cell
+abstract class GridTopology implements ITopology {
+  static final int NONE = Integer.MIN_VALUE;
+
+  int width;
+  int height;
+  int levels;
+  int forward;
+
+  // offsets[cellClass][direction] is the index offset to the neighbor,
+  // or NONE if a cell of that class has no neighbor in that direction
+  int[][] offsets;
+
+  GridTopology(int width, int height, int levels, int forward, int classes) {
+    if (width < 1 || height < 1 || levels < 1) {
+      throw new IllegalArgumentException("Topology dimensions must be positive");
+    }
+    if ((long) width * height * levels * forward > Integer.MAX_VALUE) {
+      throw new IllegalArgumentException("Topology has too many edges for int indices");
+    }
+    this.width = width;
+    this.height = height;
+    this.levels = levels;
+    this.forward = forward;
+
+    this.offsets = new int[classes][2 * forward];
+    for (int cellClass = 0; cellClass < classes; cellClass++) {
+      for (int direction = 0; direction < 2 * forward; direction++) {
+        this.offsets[cellClass][direction] = this.offset(cellClass, direction);
+      }
+    }
+  }
+
+  // returns the offset to the neighbor of a cell of the given class
+  // in the given direction, or NONE if there is no such neighbor
+  abstract int offset(int cellClass, int direction);
+
+  // returns the class of the given cell, which decides its row of offsets
+  public abstract int cellClass(int cell);
+
+  public int cellCount() {
+    return this.width * this.height * this.levels;
+  }
+
+  public int directions() {
+    return 2 * this.forward;
+  }
+
+  public int forwardDirections() {
+    return this.forward;
+  }
+
+  public int neighbor(int cell, int direction) {
+    return this.neighbor(cell, direction, this.cellClass(cell));
+  }
+
+  public int neighbor(int cell, int direction, int cellClass) {
+    int offset = this.offsets[cellClass][direction];
+    if (offset == NONE) {
+      return -1;
+    }
+    return cell + offset;
+  }
+
+  public int opposite(int direction) {
+    return (direction + this.forward) % (2 * this.forward);
+  }
+
+  // returns the distance of the given cell from the left of its row
+  int x(int cell) {
+    return cell % this.width;
+  }
+
+  // returns the distance of the given cell from the top of its level
+  int y(int cell) {
+    return cell / this.width % this.height;
+  }
+
+  // returns the level of the given cell
+  int z(int cell) {
+    return cell / (this.width * this.height);
+  }
+
+  // returns the boundary bits of a cell on a flat grid:
+  // 1 on the right column, 2 on the bottom row, 4 on the left column, 8 on the top row
+  int edgeBits(int cell) {
+    int x = this.x(cell);
+    int y = this.y(cell);
+    return (x == this.width - 1 ? 1 : 0)
+        | (y == this.height - 1 ? 2 : 0)
+        | (x == 0 ? 4 : 0)
+        | (y == 0 ? 8 : 0);
+  }
+}
+
+// Represents a rectangular grid, with directions right, down, left and up
+class RectTopology extends GridTopology {
+  RectTopology(int width, int height) {
+    super(width, height, 1, 2, 16);
+  }
+
+  // returns the index of the passage between the two cells of the given Edge
+  // in a rectangular maze of the given width
+  static int passage(int width, Edge edge) {
+    int from = width * edge.from.y + edge.from.x;
+    int to = width * edge.to.y + edge.to.x;
+    if (edge.from.y == edge.to.y) {
+      return 2 * Math.min(from, to);
+    } else {
+      return 2 * Math.min(from, to) + 1;
+    }
+  }
+
+  int offset(int cellClass, int direction) {
+    // a direction is blocked when the cell is on the boundary it points at
+    if ((cellClass & (1 << direction)) != 0) {
+      return NONE;
+    }
+    switch (direction) {
+      case 0: return 1;
+      case 1: return this.width;
+      case 2: return -1;
+      default: return -this.width;
+    }
+  }
+
+  public int cellClass(int cell) {
+    return this.edgeBits(cell);
+  }
+}
+
+// Represents a rectangular grid whose edges wrap around to the opposite side,
+// with directions right, down, left and up
+class TorusTopology extends GridTopology {
+  TorusTopology(int width, int height) {
+    super(width, height, 1, 2, 16);
+    // any narrower and a cell would wrap around to itself or reach a neighbor both ways
+    if (width < 3 || height < 3) {
+      throw new IllegalArgumentException("A torus must be at least 3 cells wide and high");
+    }
+  }
+
+  int offset(int cellClass, int direction) {
+    boolean wraps = (cellClass & (1 << direction)) != 0;
+    int cells = this.width * this.height;
+    switch (direction) {
+      case 0: return wraps ? 1 - this.width : 1;
+      case 1: return wraps ? this.width - cells : this.width;
+      case 2: return wraps ? this.width - 1 : -1;
+      default: return wraps ? cells - this.width : -this.width;
+    }
+  }
+
+  public int cellClass(int cell) {
+    return this.edgeBits(cell);
+  }
+}
+
+// Represents a grid of hexagons in rows where odd rows are shifted half a cell right,
+// with directions right, down right, down left, left, up left and up right
+class HexTopology extends GridTopology {
+  HexTopology(int width, int height) {
+    super(width, height, 1, 3, 32);
+  }
+
+  int offset(int cellClass, int direction) {
+    boolean right = (cellClass & 1) != 0;
+    boolean bottom = (cellClass & 2) != 0;
+    boolean left = (cellClass & 4) != 0;
+    boolean top = (cellClass & 8) != 0;
+    boolean odd = (cellClass & 16) != 0;
+    int w = this.width;
+    switch (direction) {
+      case 0: return right ? NONE : 1;
+      case 1: return bottom || (odd && right) ? NONE : (odd ? w + 1 : w);
+      case 2: return bottom || (!odd && left) ? NONE : (odd ? w : w - 1);
+      case 3: return left ? NONE : -1;
+      case 4: return top || (!odd && left) ? NONE : (odd ? -w : -w - 1);
+      default: return top || (odd && right) ? NONE : (odd ? 1 - w : -w);
+    }
+  }
+
+  public int cellClass(int cell) {
+    return this.edgeBits(cell) | (this.y(cell) % 2 == 1 ? 16 : 0);
+  }
+}
+
+// Represents levels of rectangular grids stacked on top of each other,
+// with directions right, down, up a level, left, up and down a level
+class StackedTopology extends GridTopology {
+  StackedTopology(int width, int height, int levels) {
+    super(width, height, levels, 3, 64);
+  }
+
+  int offset(int cellClass, int direction) {
+    int w = this.width;
+    int level = this.width * this.height;
+    switch (direction) {
+      case 0: return (cellClass & 1) != 0 ? NONE : 1;
+      case 1: return (cellClass & 2) != 0 ? NONE : w;
+      case 2: return (cellClass & 16) != 0 ? NONE : level;
+      case 3: return (cellClass & 4) != 0 ? NONE : -1;
+      case 4: return (cellClass & 8) != 0 ? NONE : -w;
+      default: return (cellClass & 32) != 0 ? NONE : -level;
+    }
+  }
+
+  public int cellClass(int cell) {
+    int z = this.z(cell);
+    return this.edgeBits(cell)
+        | (z == this.levels - 1 ? 16 : 0)
+        | (z == 0 ? 32 : 0);
+  }
+}
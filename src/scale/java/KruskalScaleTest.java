@@ -0,0 +1,63 @@
+import java.util.Random;
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+// Generates a maze with the object Graph, Cell, Edge and Kruskal classes used by
+// BatchPipeline and ChunkedMaze at the number of cells in the scale.cells system
+// property, failing when memory per cell or time per cell goes over budget.
+// The objects cost two orders of magnitude more per cell than the flat classes,
+// so this runs at a mid size through the scaleSuiteObjects task in build.gradle
+class KruskalScaleTest {
+  // bytes kept per cell by a Graph with its Kruskal finished: a Cell, four Edges
+  // (each passage in both directions), the worklist, the representatives map and the log
+  static final double RETAINED_BUDGET = 450;
+
+  // bytes allocated per cell while building and sorting the graph and running Kruskal
+  static final double ALLOCATION_BUDGET = 750;
+
+  // nanoseconds per cell to build the graph and run Kruskal, loose enough for a cold JIT
+  // and a loaded machine but far below what a quadratic step would take
+  static final double TIME_BUDGET = 20000;
+
+  @Test
+  void scale() {
+    int cells = (int) Double.parseDouble(System.getProperty("scale.cells", "2e5"));
+    int width = (int) Math.sqrt(cells);
+    int height = cells / width;
+    cells = width * height;
+    System.out.println("Object scale " + width + " x " + height + " = " + cells
+        + " cells, -Xmx" + Runtime.getRuntime().maxMemory() / (1 << 20) + "m");
+
+    long baseline = ScaleTest.usedAfterGc();
+    long allocatedBefore = ScaleTest.allocatedBytes();
+    long start = System.nanoTime();
+    Graph graph = new Graph(width, height, 1, new Random(cells));
+    Kruskal kruskal = new Kruskal(graph);
+    kruskal.runKruskalImmediately();
+    long generateNanos = System.nanoTime() - start;
+    double allocationPerCell = (double) (ScaleTest.allocatedBytes() - allocatedBefore) / cells;
+    double retainedPerCell = (double) (ScaleTest.usedAfterGc() - baseline) / cells;
+    double nanosPerCell = (double) generateNanos / cells;
+
+    assertEquals(cells - 1, kruskal.edgesInTree.size());
+    FlatMaze maze = FlatMaze.fromEdges(kruskal.edgesInTree, width, height);
+    assertEquals(cells - 1, maze.passageCount());
+    int[] path = new FlatSolver(maze).path(0, cells - 1);
+    assertTrue(path.length > 0, "the tree joins the corners");
+
+    System.out.println(String.format("object generation in %d ms, %.0f ns per cell, "
+        + "allocated %.0f and retained %.0f bytes per cell", generateNanos / 1000000,
+        nanosPerCell, allocationPerCell, retainedPerCell));
+    assertTrue(retainedPerCell <= RETAINED_BUDGET,
+        String.format("object generator retained %.0f bytes per cell (budget %.0f)",
+            retainedPerCell, RETAINED_BUDGET));
+    assertTrue(allocationPerCell <= ALLOCATION_BUDGET,
+        String.format("object generation allocated %.0f bytes per cell (budget %.0f)",
+            allocationPerCell, ALLOCATION_BUDGET));
+    assertTrue(nanosPerCell <= TIME_BUDGET,
+        String.format("object generation took %.0f ns per cell (budget %.0f)",
+            nanosPerCell, TIME_BUDGET));
+  }
+}
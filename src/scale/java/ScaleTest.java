@@ -0,0 +1,134 @@
+import java.lang.management.ManagementFactory;
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+// Generates and solves a maze with the flat classes at the number of cells in the
+// scale.cells system property, failing when memory or allocation per cell goes over budget.
+// Run through the scaleSuite tasks in build.gradle, which fix -Xmx for each size
+class ScaleTest {
+  // bytes kept per cell by a finished FlatMaze (2 passage bits per cell)
+  static final double RETAINED_MAZE_BUDGET = 0.75;
+
+  // bytes kept per cell while FlatKruskal runs (an int and 2 bits per cell)
+  static final double RETAINED_GENERATOR_BUDGET = 5.0;
+
+  // bytes allocated for each edge FlatKruskal adds to the tree
+  static final double ALLOCATION_PER_EDGE_BUDGET = 6.0;
+
+  // bytes allocated per cell by FlatSolver
+  static final double SOLVE_ALLOCATION_BUDGET = 2.0;
+
+  // nanoseconds per cell to count degrees, runs and corridors, and to find the diameter.
+  // The counts split across cores and the diameter does not, so these hold on one core
+  static final double COUNTS_TIME_BUDGET = 1000;
+  static final double DIAMETER_TIME_BUDGET = 300;
+
+  // generates and solves a rectangular maze of about the given size,
+  // checking memory use, allocation and the spanning tree invariant
+  @Test
+  void scale() {
+    int cells = (int) Double.parseDouble(System.getProperty("scale.cells", "1e6"));
+    int width = (int) Math.sqrt(cells);
+    int height = cells / width;
+    cells = width * height;
+    System.out.println("Scale " + width + " x " + height + " = " + cells + " cells, -Xmx"
+        + Runtime.getRuntime().maxMemory() / (1 << 20) + "m");
+
+    long baseline = usedAfterGc();
+    long allocatedBefore = allocatedBytes();
+    long start = System.nanoTime();
+    FlatKruskal kruskal = new FlatKruskal(new RectTopology(width, height), cells, 1);
+    FlatMaze maze = kruskal.runKruskalImmediately();
+    long generateNanos = System.nanoTime() - start;
+    double allocationPerEdge = (double) (allocatedBytes() - allocatedBefore)
+        / kruskal.edgesInTree;
+    double generatorPerCell = (double) (usedAfterGc() - baseline) / cells;
+
+    assertEquals(cells - 1, kruskal.edgesInTree);
+    assertEquals(cells - 1, maze.passageCount());
+    int root = kruskal.findRepresentative(0);
+    assertEquals(-cells, kruskal.representatives[root],
+        "every cell is in one set, so the tree is connected");
+    System.out.println(String.format("generation allocated %.2f bytes per edge in %d ms",
+        allocationPerEdge, generateNanos / 1000000));
+    assertTrue(allocationPerEdge <= ALLOCATION_PER_EDGE_BUDGET,
+        String.format("generation allocated %.2f bytes per edge (budget %.2f)",
+            allocationPerEdge, ALLOCATION_PER_EDGE_BUDGET));
+    System.out.println(String.format("generator retained %.2f bytes per cell",
+        generatorPerCell));
+    assertTrue(generatorPerCell <= RETAINED_GENERATOR_BUDGET,
+        String.format("generator retained %.2f bytes per cell (budget %.2f)",
+            generatorPerCell, RETAINED_GENERATOR_BUDGET));
+
+    kruskal = null;
+    double mazePerCell = (double) (usedAfterGc() - baseline) / cells;
+    System.out.println(String.format("finished maze retained %.2f bytes per cell",
+        mazePerCell));
+    assertTrue(mazePerCell <= RETAINED_MAZE_BUDGET,
+        String.format("finished maze retained %.2f bytes per cell (budget %.2f)",
+            mazePerCell, RETAINED_MAZE_BUDGET));
+
+    allocatedBefore = allocatedBytes();
+    start = System.nanoTime();
+    FlatSolver solver = new FlatSolver(maze);
+    int[] path = solver.path(0, cells - 1);
+    long solveNanos = System.nanoTime() - start;
+    double solvePerCell = (double) (allocatedBytes() - allocatedBefore - 4L * path.length)
+        / cells;
+    assertTrue(path.length > 0 && path[0] == 0 && path[path.length - 1] == cells - 1,
+        "solution joins the corners");
+    System.out.println(String.format("solving allocated %.2f bytes per cell in %d ms",
+        solvePerCell, solveNanos / 1000000));
+    assertTrue(solvePerCell <= SOLVE_ALLOCATION_BUDGET,
+        String.format("solving allocated %.2f bytes per cell (budget %.2f)",
+            solvePerCell, SOLVE_ALLOCATION_BUDGET));
+
+    solver = null;
+    start = System.nanoTime();
+    MazeAnalytics analytics = new MazeAnalytics(maze);
+    analytics.countDegrees();
+    analytics.countRuns();
+    analytics.countCorridors();
+    long countsNanos = System.nanoTime() - start;
+    start = System.nanoTime();
+    analytics.findDiameter();
+    long diameterNanos = System.nanoTime() - start;
+    long counted = 0;
+    long passageEnds = 0;
+    for (int degree = 0; degree < analytics.degreeHistogram.length; degree++) {
+      counted += analytics.degreeHistogram[degree];
+      passageEnds += degree * analytics.degreeHistogram[degree];
+    }
+    System.out.println("analytics counted in " + countsNanos / 1000000 + " ms, diameter in "
+        + diameterNanos / 1000000 + " ms: " + analytics.summary());
+    assertEquals(cells, counted);
+    assertEquals(2L * (cells - 1), passageEnds);
+    assertTrue(analytics.diameter >= path.length - 1,
+        "the diameter is at least the length of the solution");
+    double countsPerCell = (double) countsNanos / cells;
+    assertTrue(countsPerCell <= COUNTS_TIME_BUDGET,
+        String.format("analytics counts took %.0f ns per cell (budget %.0f)",
+            countsPerCell, COUNTS_TIME_BUDGET));
+    double diameterPerCell = (double) diameterNanos / cells;
+    assertTrue(diameterPerCell <= DIAMETER_TIME_BUDGET,
+        String.format("diameter took %.0f ns per cell (budget %.0f)",
+            diameterPerCell, DIAMETER_TIME_BUDGET));
+  }
+
+  // returns the bytes in use after collecting garbage
+  static long usedAfterGc() {
+    Runtime runtime = Runtime.getRuntime();
+    for (int i = 0; i < 3; i++) {
+      System.gc();
+    }
+    return runtime.totalMemory() - runtime.freeMemory();
+  }
+
+  // returns the bytes allocated by this thread so far
+  static long allocatedBytes() {
+    return ((com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean())
+        .getThreadAllocatedBytes(Thread.currentThread().getId());
+  }
+}
@@ -0,0 +1,31 @@
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+// Checks that mazes generated in bands and merged are exactly the mazes
+// FlatKruskal generates for the whole grid
+class BandedMazeTest {
+  @TempDir
+  Path directory;
+
+  @Test
+  void mergedBandsMatchWholeMaze() throws IOException {
+    int[][] sizes = {{200, 150, 6}, {37, 23, 5}, {1, 30, 3}, {33, 90, 90}};
+    for (int[] size : sizes) {
+      String name = size[0] + " x " + size[1] + " in " + size[2] + " bands";
+      Path bands = Files.createDirectory(this.directory.resolve(size[0] + "x" + size[1]));
+      BandedMaze banded = new BandedMaze(size[0], size[1], size[2], 13, 2, bands);
+      banded.generateBandsHere();
+      banded.merge();
+      banded.writeMaze(bands.resolve("maze.maze"));
+      FlatMaze merged = BandedMaze.readMaze(bands.resolve("maze.maze"));
+      FlatMaze whole = new FlatKruskal(new RectTopology(size[0], size[1]), 13, 2)
+          .runKruskalImmediately();
+      assertEquals(whole.passages, merged.passages, name);
+    }
+  }
+}
@@ -0,0 +1,143 @@
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+// Checks that pipeline stages stop on the END job, that a full queue holds back the
+// stage feeding it, and that a failing step stops its stage and the whole pipeline
+class BatchPipelineTest {
+  @TempDir
+  Path directory;
+
+  // every worker of both stages stops, each job goes through once,
+  // and END comes out of the last stage after the last job
+  @Test
+  void endJobStopsEveryWorker() throws Exception {
+    BlockingQueue<MazeJob> first = new ArrayBlockingQueue<MazeJob>(4);
+    BlockingQueue<MazeJob> second = new ArrayBlockingQueue<MazeJob>(4);
+    BlockingQueue<MazeJob> done = new ArrayBlockingQueue<MazeJob>(100);
+    ConcurrentHashMap<Integer, Integer> seen = new ConcurrentHashMap<Integer, Integer>();
+    PipelineStage a = new PipelineStage("a", first, second, 3, job -> { });
+    PipelineStage b = new PipelineStage("b", second, done, 3,
+        job -> seen.merge(job.index, 1, Integer::sum));
+    ExecutorService executor = Executors.newCachedThreadPool();
+    a.start(executor);
+    b.start(executor);
+    for (int i = 0; i < 50; i++) {
+      first.put(new MazeJob(i));
+    }
+    first.put(MazeJob.END);
+
+    assertTrue(b.finished.await(10, TimeUnit.SECONDS));
+    assertEquals(0, a.finished.getCount());
+    assertEquals(0, a.running.get());
+    assertEquals(0, b.running.get());
+    assertEquals(50, a.processed.get());
+    assertEquals(50, b.processed.get());
+    assertEquals(50, seen.size());
+    for (int count : seen.values()) {
+      assertEquals(1, count);
+    }
+    assertEquals(51, done.size());
+    MazeJob last = null;
+    for (MazeJob job : done) {
+      last = job;
+    }
+    assertSame(MazeJob.END, last);
+    executor.shutdown();
+  }
+
+  // with nothing taking from its 2 place output queue, a stage fills it, takes one
+  // more job and blocks putting it until a later stage starts taking
+  @Test
+  void fullQueueBlocksUpstreamStage() throws Exception {
+    BlockingQueue<MazeJob> input = new ArrayBlockingQueue<MazeJob>(20);
+    BlockingQueue<MazeJob> output = new ArrayBlockingQueue<MazeJob>(2);
+    BlockingQueue<MazeJob> done = new ArrayBlockingQueue<MazeJob>(20);
+    for (int i = 0; i < 10; i++) {
+      input.put(new MazeJob(i));
+    }
+    input.put(MazeJob.END);
+    PipelineStage upstream = new PipelineStage("up", input, output, 1, job -> { });
+    ExecutorService executor = Executors.newCachedThreadPool();
+    upstream.start(executor);
+
+    long deadline = System.nanoTime() + 10000000000L;
+    while (upstream.processed.get() < 3 && System.nanoTime() < deadline) {
+      Thread.sleep(5);
+    }
+    Thread.sleep(200);
+    assertEquals(3, upstream.processed.get());
+    assertEquals(0, output.remainingCapacity());
+    assertEquals(8, input.size());
+    assertEquals(1, upstream.finished.getCount());
+
+    PipelineStage downstream = new PipelineStage("down", output, done, 1, job -> { });
+    downstream.start(executor);
+    assertTrue(downstream.finished.await(10, TimeUnit.SECONDS));
+    assertEquals(10, upstream.processed.get());
+    assertEquals(10, downstream.processed.get());
+    executor.shutdown();
+  }
+
+  // the failing worker records the failure and, as the last one running,
+  // still passes END on so later stages stop
+  @Test
+  void failingStepStopsItsStage() throws Exception {
+    BlockingQueue<MazeJob> input = new ArrayBlockingQueue<MazeJob>(10);
+    BlockingQueue<MazeJob> output = new ArrayBlockingQueue<MazeJob>(10);
+    PipelineStage stage = new PipelineStage("failing", input, output, 1, job -> {
+      if (job.index == 2) {
+        throw new IOException("disk full");
+      }
+    });
+    ExecutorService executor = Executors.newCachedThreadPool();
+    stage.start(executor);
+    for (int i = 0; i < 5; i++) {
+      input.put(new MazeJob(i));
+    }
+
+    assertTrue(stage.finished.await(10, TimeUnit.SECONDS));
+    assertTrue(stage.failure instanceof IOException);
+    assertEquals(2, stage.processed.get());
+    assertEquals(3, output.size());
+    assertEquals(0, output.take().index);
+    assertEquals(1, output.take().index);
+    assertSame(MazeJob.END, output.take());
+    executor.shutdown();
+  }
+
+  @Test
+  void runWritesEveryMaze() throws Exception {
+    new BatchPipeline(6, 12, 9, 2, 5, this.directory).run();
+    for (int i = 0; i < 6; i++) {
+      String name = String.format("maze-%07d", i);
+      assertTrue(Files.size(this.directory.resolve(name + ".png")) > 0);
+      assertTrue(Files.size(this.directory.resolve(name + ".maze")) > 0);
+    }
+  }
+
+  @Test
+  void runThrowsWhenAStageFails() {
+    BatchPipeline pipeline = new BatchPipeline(20, 12, 9, 2, 5, this.directory) {
+      void render(MazeJob job) throws IOException {
+        throw new IOException("no image writer");
+      }
+    };
+    RuntimeException thrown = assertThrows(RuntimeException.class, () -> pipeline.run());
+    assertEquals("Stage render failed", thrown.getMessage());
+    assertTrue(thrown.getCause() instanceof IOException);
+  }
+}
@@ -0,0 +1,157 @@
+import java.util.ArrayDeque;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.Random;
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotSame;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+// Checks that an endless maze looks the same however much of it the cache has forgotten,
+// that the cache forgets the least recently used chunk, that neighboring chunks
+// agree on the openings between them and that an InfiniteMazeWorld player only
+// walks through openings
+class ChunkedMazeTest {
+  @Test
+  void evictedChunkIsGeneratedAgainBitForBit() {
+    ChunkedMaze world = new ChunkedMaze(17, 12, 2, 2);
+    MazeChunk first = world.chunk(-1, 3);
+    BitSet passages = (BitSet) first.maze.passages.clone();
+    world.chunk(0, 0);
+    world.chunk(1, 0);
+    assertNull(world.cache.chunks.get(ChunkCache.key(-1, 3)));
+
+    MazeChunk again = world.chunk(-1, 3);
+    assertNotSame(first, again);
+    assertEquals(passages, again.maze.passages);
+    assertEquals(passages, new ChunkedMaze(17, 12, 2, 1).chunk(-1, 3).maze.passages);
+  }
+
+  @Test
+  void cacheEvictsLeastRecentlyUsedChunk() {
+    ChunkedMaze world = new ChunkedMaze(5, 8, 1, 3);
+    world.chunk(0, 0);
+    world.chunk(1, 0);
+    world.chunk(2, 0);
+    world.chunk(0, 0);
+    assertEquals(1, world.cache.hits);
+    assertEquals(3, world.cache.misses);
+    assertEquals(0, world.cache.evictions);
+
+    // (1, 0) is now the least recently used, then (2, 0)
+    world.chunk(3, 0);
+    assertEquals(1, world.cache.evictions);
+    assertArrayEquals(new Long[] {ChunkCache.key(2, 0), ChunkCache.key(0, 0),
+        ChunkCache.key(3, 0)}, world.cache.chunks.keySet().toArray(new Long[0]));
+
+    world.chunk(1, 0);
+    assertEquals(2, world.cache.evictions);
+    assertEquals(5, world.cache.misses);
+    assertNull(world.cache.chunks.get(ChunkCache.key(2, 0)));
+    assertEquals(3, world.cache.size());
+  }
+
+  // each shared border has exactly one opening, seen the same from both sides
+  @Test
+  void neighborChunksAgreeOnBorders() {
+    int size = 10;
+    ChunkedMaze world = new ChunkedMaze(23, size, 3, 4);
+    for (int chunkX = -3; chunkX < 3; chunkX++) {
+      for (int chunkY = -3; chunkY < 3; chunkY++) {
+        int east = 0;
+        int south = 0;
+        for (int i = 0; i < size; i++) {
+          int x = chunkX * size + size - 1;
+          int y = chunkY * size + i;
+          assertEquals(world.isOpen(x, y, 0), world.isOpen(x + 1, y, 2));
+          east += world.isOpen(x, y, 0) ? 1 : 0;
+
+          x = chunkX * size + i;
+          y = chunkY * size + size - 1;
+          assertEquals(world.isOpen(x, y, 1), world.isOpen(x, y + 1, 3));
+          south += world.isOpen(x, y, 1) ? 1 : 0;
+        }
+        assertEquals(1, east, "east border of " + chunkX + ", " + chunkY);
+        assertEquals(1, south, "south border of " + chunkX + ", " + chunkY);
+      }
+    }
+  }
+
+  // a search over 4 by 4 chunks reaches every cell, through a cache that only holds
+  // 3 chunks and keeps generating them again
+  @Test
+  void pathCrossesSeveralChunks() {
+    int size = 8;
+    int chunks = 4;
+    int side = size * chunks;
+    ChunkedMaze world = new ChunkedMaze(31, size, 2, 3);
+    int[] distances = new int[side * side];
+    Arrays.fill(distances, -1);
+    // cells are numbered from the top left corner of chunk (-2, -2)
+    int origin = -2 * size;
+    distances[0] = 0;
+    ArrayDeque<Integer> worklist = new ArrayDeque<Integer>();
+    worklist.add(0);
+    int[][] steps = {{1, 0}, {0, 1}, {-1, 0}, {0, -1}};
+    while (!worklist.isEmpty()) {
+      int cell = worklist.remove();
+      int x = cell % side;
+      int y = cell / side;
+      for (int direction = 0; direction < 4; direction++) {
+        int nx = x + steps[direction][0];
+        int ny = y + steps[direction][1];
+        if (nx < 0 || ny < 0 || nx >= side || ny >= side
+            || !world.isOpen(origin + x, origin + y, direction)) {
+          continue;
+        }
+        int next = ny * side + nx;
+        if (distances[next] == -1) {
+          distances[next] = distances[cell] + 1;
+          worklist.add(next);
+        }
+      }
+    }
+    for (int cell = 0; cell < distances.length; cell++) {
+      assertTrue(distances[cell] >= 0, "cell " + cell + " is reached");
+    }
+    assertTrue(distances[side * side - 1] >= 2 * (side - 1));
+    assertTrue(world.cache.evictions > 0);
+  }
+
+  // the player only moves through open passages, across chunk borders too
+  @Test
+  void playerMovesOnlyThroughOpenings() {
+    InfiniteMazeWorld world = new InfiniteMazeWorld(20, 1, 41);
+    String[] keys = {"right", "down", "left", "up"};
+    int[][] steps = {{1, 0}, {0, 1}, {-1, 0}, {0, -1}};
+    Random rand = new Random(4);
+    int moves = 0;
+    int crossings = 0;
+    for (int i = 0; i < 5000; i++) {
+      int direction = rand.nextInt(4);
+      int x = world.playerX;
+      int y = world.playerY;
+      boolean open = world.maze.isOpen(x, y, direction);
+      world.onKeyEvent(keys[direction]);
+      if (open) {
+        moves++;
+        assertEquals(x + steps[direction][0], world.playerX);
+        assertEquals(y + steps[direction][1], world.playerY);
+        if (Math.floorDiv(x, InfiniteMazeWorld.CHUNK_SIZE)
+            != Math.floorDiv(world.playerX, InfiniteMazeWorld.CHUNK_SIZE)
+            || Math.floorDiv(y, InfiniteMazeWorld.CHUNK_SIZE)
+            != Math.floorDiv(world.playerY, InfiniteMazeWorld.CHUNK_SIZE)) {
+          crossings++;
+        }
+      } else {
+        assertEquals(x, world.playerX);
+        assertEquals(y, world.playerY);
+      }
+    }
+    assertEquals(moves, world.playerMoves);
+    assertTrue(crossings > 0);
+  }
+}
@@ -0,0 +1,121 @@
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Random;
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+// Checks IndexedMinHeap against a scan for the smallest key, and FlatDijkstra
+// against the Bellman-Ford algorithm on braided mazes
+class DijkstraTest {
+  @Test
+  void heapMatchesScan() {
+    Random rand = new Random(4);
+    int cells = 500;
+    IndexedMinHeap heap = new IndexedMinHeap(cells);
+    // the key of each cell in the heap, or -1 if it is not in it
+    int[] keys = new int[cells];
+    Arrays.fill(keys, -1);
+    for (int i = 0; i < 20000; i++) {
+      if (rand.nextInt(3) > 0) {
+        int cell = rand.nextInt(cells);
+        int key = rand.nextInt(1000);
+        heap.push(cell, key);
+        keys[cell] = keys[cell] == -1 ? key : Math.min(keys[cell], key);
+      } else if (!heap.isEmpty()) {
+        int min = heap.removeMin();
+        for (int key : keys) {
+          assertTrue(key == -1 || key >= keys[min]);
+        }
+        keys[min] = -1;
+      }
+      for (int cell = 0; cell < cells; cell++) {
+        assertEquals(keys[cell] != -1, heap.contains(cell));
+      }
+    }
+  }
+
+  // braided Graph mazes, walked with their edge weights as costs
+  @Test
+  void braidedGraphMatchesBellmanFord() {
+    for (int seed = 0; seed < 10; seed++) {
+      Graph graph = new Graph(30, 20, 2, new Random(seed));
+      Kruskal kruskal = new Kruskal(graph);
+      kruskal.runKruskalImmediately();
+      FlatMaze maze = FlatMaze.fromEdges(kruskal.edgesInTree, 30, 20);
+      ArrayList<Edge> loops = kruskal.braid(0.2, new Random(seed));
+      assertFalse(loops.isEmpty());
+      for (Edge edge : loops) {
+        maze.openEdge(edge);
+      }
+      this.checkAgainstBellmanFord(maze, new PassageCosts(graph, 30, 20), 0, 599);
+    }
+  }
+
+  // flat mazes of every topology with extra passages, walked with FlatKruskal's weights
+  @Test
+  void braidedFlatMazeMatchesBellmanFord() {
+    for (ITopology topology : TestMazes.topologies(40, 30)) {
+      FlatKruskal kruskal = new FlatKruskal(topology, 6, 3);
+      FlatMaze maze = kruskal.runKruskalImmediately();
+      Random rand = new Random(5);
+      for (int i = 0; i < topology.cellCount() / 5; i++) {
+        int edge = maze.edge(rand.nextInt(topology.cellCount()),
+            rand.nextInt(topology.forwardDirections()));
+        if (edge >= 0) {
+          maze.passages.set(edge);
+        }
+      }
+      for (int i = 0; i < 5; i++) {
+        this.checkAgainstBellmanFord(maze, kruskal, rand.nextInt(topology.cellCount()),
+            rand.nextInt(topology.cellCount()));
+      }
+    }
+  }
+
+  // checks that FlatDijkstra finds a path of open passages between the given cells
+  // that costs what the Bellman-Ford algorithm says the cheapest one does
+  void checkAgainstBellmanFord(FlatMaze maze, IEdgeWeights weights, int from, int to) {
+    ITopology topology = maze.topology;
+    long[] costs = new long[topology.cellCount()];
+    Arrays.fill(costs, Long.MAX_VALUE);
+    costs[from] = 0;
+    for (boolean changed = true; changed; ) {
+      changed = false;
+      for (int cell = 0; cell < topology.cellCount(); cell++) {
+        for (int direction = 0; costs[cell] != Long.MAX_VALUE
+            && direction < topology.directions(); direction++) {
+          if (maze.isOpen(cell, direction)) {
+            int next = topology.neighbor(cell, direction);
+            long cost = costs[cell] + weights.weight(maze.edge(cell, direction));
+            if (cost < costs[next]) {
+              costs[next] = cost;
+              changed = true;
+            }
+          }
+        }
+      }
+    }
+
+    FlatDijkstra dijkstra = new FlatDijkstra(maze, weights);
+    int[] path = dijkstra.path(from, to);
+    assertEquals(from, path[0]);
+    assertEquals(to, path[path.length - 1]);
+    long total = 0;
+    for (int i = 1; i < path.length; i++) {
+      int passage = -1;
+      for (int direction = 0; direction < topology.directions(); direction++) {
+        if (topology.neighbor(path[i - 1], direction) == path[i]
+            && maze.isOpen(path[i - 1], direction)) {
+          passage = maze.edge(path[i - 1], direction);
+        }
+      }
+      assertTrue(passage >= 0, "the path goes through an open passage at " + i);
+      total += weights.weight(passage);
+    }
+    assertEquals(costs[to], total);
+    assertEquals(costs[to], dijkstra.distances[to]);
+  }
+}
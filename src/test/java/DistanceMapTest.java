@@ -0,0 +1,79 @@
+import java.util.Arrays;
+import java.util.Random;
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+// Checks DistanceMap against a plain breadth-first search on perfect mazes, whose
+// levels stay top-down, and on open and half-open mazes, where wide enough levels
+// go bottom-up and back
+class DistanceMapTest {
+  @Test
+  void perfectMazeMatchesBfs() {
+    for (ITopology topology : TestMazes.topologies(300, 200)) {
+      FlatMaze maze = new FlatKruskal(topology, 3, 1).runKruskalImmediately();
+      this.checkAgainstBfs(maze, 5);
+    }
+  }
+
+  @Test
+  void openMazeMatchesBfs() {
+    for (ITopology topology : TestMazes.topologies(300, 200)) {
+      FlatMaze maze = openMaze(topology, 10, new Random(1));
+      DistanceMap map = this.checkAgainstBfs(maze, topology.cellCount() / 2);
+      assertTrue(map.bottomUpLevels > 0, topology.getClass().getSimpleName());
+      assertTrue(map.topDownLevels > 1, topology.getClass().getSimpleName());
+    }
+  }
+
+  // some cells cannot be reached, and stay at -1 whichever way the levels go
+  @Test
+  void halfOpenMazeMatchesBfs() {
+    int bottomUpLevels = 0;
+    for (ITopology topology : TestMazes.topologies(300, 200)) {
+      FlatMaze maze = openMaze(topology, 6, new Random(2));
+      bottomUpLevels += this.checkAgainstBfs(maze, topology.cellCount() / 2).bottomUpLevels;
+    }
+    assertTrue(bottomUpLevels > 0);
+  }
+
+  // large enough that the widest levels are split into parallel blocks
+  @Test
+  void largeOpenMazeMatchesBfs() {
+    FlatMaze maze = openMaze(new RectTopology(1000, 1000), 10, new Random(3));
+    DistanceMap map = this.checkAgainstBfs(maze, 500500);
+    assertTrue(map.bottomUpLevels > 0);
+  }
+
+  // returns the distance map of the given maze from the given cell,
+  // checking it against a plain breadth-first search
+  DistanceMap checkAgainstBfs(FlatMaze maze, int from) {
+    DistanceMap map = new DistanceMap(maze).run(from);
+    int[] expected = TestMazes.distances(maze, from);
+    String name = maze.topology.getClass().getSimpleName();
+    assertArrayEquals(expected, map.distances, name);
+    int max = Arrays.stream(expected).max().getAsInt();
+    assertEquals(max, map.maxDistance, name);
+    assertEquals(max, map.distances[map.farthest()], name);
+    assertEquals(Arrays.stream(expected).filter(distance -> distance >= 0).count(),
+        map.reached, name);
+    return map;
+  }
+
+  // returns a maze of the given topology with each passage open
+  // with the given chance out of 10
+  static FlatMaze openMaze(ITopology topology, int tenths, Random rand) {
+    FlatMaze maze = new FlatMaze(topology);
+    for (int cell = 0; cell < topology.cellCount(); cell++) {
+      for (int direction = 0; direction < topology.forwardDirections(); direction++) {
+        int edge = maze.edge(cell, direction);
+        if (edge >= 0 && rand.nextInt(10) < tenths) {
+          maze.passages.set(edge);
+        }
+      }
+    }
+    return maze;
+  }
+}
@@ -0,0 +1,119 @@
+import java.util.BitSet;
+import java.util.PriorityQueue;
+import java.util.Random;
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+// Checks that FlatKruskal makes a minimum spanning tree on every topology,
+// and that the topologies agree with themselves
+class FlatMazeTest {
+  // openNeighbor with the cell class worked out once gives the same cells
+  // as neighbor and isOpen
+  @Test
+  void openNeighborMatchesIsOpen() {
+    for (ITopology topology : TestMazes.topologies(20, 12)) {
+      FlatMaze maze = new FlatKruskal(topology, 4, 1).runKruskalImmediately();
+      for (int cell = 0; cell < topology.cellCount(); cell++) {
+        int cellClass = topology.cellClass(cell);
+        for (int direction = 0; direction < topology.directions(); direction++) {
+          int expected = maze.isOpen(cell, direction) ? topology.neighbor(cell, direction) : -1;
+          assertEquals(expected, maze.openNeighbor(cell, direction, cellClass),
+              topology.getClass().getSimpleName() + " cell " + cell);
+        }
+      }
+    }
+  }
+
+  // braid only opens closed passages to real neighbors, reports each one it opened,
+  // and opens about the given fraction of them
+  @Test
+  void braidOpensAFractionOfClosedPassages() {
+    for (ITopology topology : TestMazes.topologies(40, 24)) {
+      String name = topology.getClass().getSimpleName();
+      FlatMaze maze = new FlatKruskal(topology, 8, 1).runKruskalImmediately();
+      BitSet before = (BitSet) maze.passages.clone();
+      int closed = 0;
+      for (int cell = 0; cell < topology.cellCount(); cell++) {
+        for (int direction = 0; direction < topology.forwardDirections(); direction++) {
+          int edge = maze.edge(cell, direction);
+          if (edge >= 0 && !maze.passages.get(edge)) {
+            closed++;
+          }
+        }
+      }
+      IntQueue opened = maze.braid(0.25, new Random(3));
+      assertEquals(before.cardinality() + opened.size, maze.passageCount(), name);
+      BitSet added = (BitSet) maze.passages.clone();
+      added.andNot(before);
+      while (!opened.isEmpty()) {
+        int edge = opened.remove();
+        assertTrue(added.get(edge), name);
+        int forward = topology.forwardDirections();
+        assertTrue(topology.neighbor(edge / forward, edge % forward) >= 0, name);
+      }
+      assertTrue(Math.abs(added.cardinality() - closed / 4) < closed / 10,
+          name + " opened " + added.cardinality() + " of " + closed);
+      assertEquals(0, maze.braid(0, new Random(3)).size, name);
+    }
+  }
+
+  @Test
+  void torusRejectsNarrowDimensions() {
+    assertThrows(IllegalArgumentException.class, () -> new TorusTopology(2, 10));
+    assertThrows(IllegalArgumentException.class, () -> new TorusTopology(10, 1));
+    assertEquals(9, new TorusTopology(3, 3).cellCount());
+  }
+
+  @Test
+  void flatKruskalMatchesPrim() {
+    for (ITopology topology : TestMazes.topologies(120, 80)) {
+      FlatKruskal kruskal = new FlatKruskal(topology, 7, 2);
+      FlatMaze maze = kruskal.runKruskalImmediately();
+      long total = 0;
+      for (int edge = maze.passages.nextSetBit(0); edge >= 0;
+          edge = maze.passages.nextSetBit(edge + 1)) {
+        total += kruskal.weight(edge);
+      }
+      String name = topology.getClass().getSimpleName();
+      assertEquals(topology.cellCount() - 1, maze.passageCount(),
+          name + " has cells - 1 passages");
+      assertEquals(primWeight(topology, kruskal), total,
+          name + " weighs the same as Prim's tree");
+    }
+  }
+
+  // returns the weight of a minimum spanning tree of the given topology
+  static long primWeight(ITopology topology, IEdgeWeights weights) {
+    FlatMaze all = new FlatMaze(topology);
+    boolean[] inTree = new boolean[topology.cellCount()];
+    // frontier entries are weight << 32 | cell << 3 | direction
+    PriorityQueue<Long> frontier = new PriorityQueue<Long>();
+    long total = 0;
+    int cell = 0;
+    inTree[0] = true;
+    while (true) {
+      for (int direction = 0; direction < topology.directions(); direction++) {
+        int edge = all.edge(cell, direction);
+        if (edge >= 0) {
+          frontier.add((long) weights.weight(edge) << 32 | (long) cell << 3 | direction);
+        }
+      }
+      cell = -1;
+      while (cell < 0 && !frontier.isEmpty()) {
+        long next = frontier.remove();
+        int to = topology.neighbor((int) (next >>> 3 & 0x1FFFFFFF), (int) (next & 7));
+        if (!inTree[to]) {
+          inTree[to] = true;
+          total += next >>> 32;
+          cell = to;
+        }
+      }
+      if (cell < 0) {
+        return total;
+      }
+    }
+  }
+}
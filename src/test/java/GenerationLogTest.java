@@ -0,0 +1,83 @@
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.util.Random;
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+// Checks that a GenerationReplay seeks to the same edges however it gets there,
+// and that a GenerationLog reads back what it wrote
+class GenerationLogTest {
+  static final int INTERVAL = GenerationLog.CHECKPOINT_INTERVAL;
+
+  static Kruskal generate() {
+    Kruskal kruskal = new Kruskal(new Graph(100, 80, 2, new Random(8)));
+    kruskal.runKruskalImmediately();
+    assertTrue(kruskal.log.steps > 2 * INTERVAL + 1);
+    return kruskal;
+  }
+
+  // seeks forwards and backwards onto, just before and just after checkpoints
+  @Test
+  void seekAcrossCheckpoints() {
+    Kruskal kruskal = generate();
+    GenerationReplay replay = new GenerationReplay(kruskal.log, kruskal.worklist);
+    int[] steps = {INTERVAL - 1, INTERVAL, INTERVAL + 1, 2 * INTERVAL + 1, INTERVAL - 1,
+        0, 2 * INTERVAL, INTERVAL + 1, INTERVAL, kruskal.log.steps, INTERVAL - 1,
+        2 * INTERVAL - 1, 1, 2 * INTERVAL};
+    for (int step : steps) {
+      replay.seek(step);
+      this.checkAt(kruskal, replay, step);
+    }
+
+    Random rand = new Random(9);
+    for (int i = 0; i < 500; i++) {
+      int step = rand.nextInt(kruskal.log.steps + 1);
+      replay.seek(step);
+      this.checkAt(kruskal, replay, step);
+    }
+  }
+
+  // checks that the replay holds the edges accepted before the given step
+  void checkAt(Kruskal kruskal, GenerationReplay replay, int step) {
+    int accepted = 0;
+    for (int before = 0; before < step; before++) {
+      if (kruskal.log.wasAccepted(before)) {
+        accepted++;
+      }
+    }
+    assertEquals(accepted, kruskal.log.acceptedBefore(step), "step " + step);
+    assertEquals(kruskal.edgesInTree.subList(0, accepted), replay.edgesInTree, "step " + step);
+  }
+
+  @Test
+  void writeThenReadGivesSameLog() throws IOException {
+    Kruskal kruskal = generate();
+    GenerationLog log = kruskal.log;
+    ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+    log.writeTo(new DataOutputStream(bytes));
+    GenerationLog read = GenerationLog.readFrom(
+        new DataInputStream(new ByteArrayInputStream(bytes.toByteArray())));
+
+    assertEquals(log.steps, read.steps);
+    assertEquals(log.accepted, read.accepted);
+    assertEquals(log.checkpointCount, read.checkpointCount);
+    for (int step = 0; step <= log.steps; step++) {
+      if (step < log.steps) {
+        assertEquals(log.wasAccepted(step), read.wasAccepted(step), "step " + step);
+      }
+      assertEquals(log.acceptedBefore(step), read.acceptedBefore(step), "step " + step);
+    }
+
+    GenerationReplay replay = new GenerationReplay(read, kruskal.worklist);
+    boolean more = true;
+    while (more) {
+      more = replay.advance(1000);
+    }
+    assertEquals(kruskal.edgesInTree, replay.edgesInTree);
+  }
+}
@@ -0,0 +1,126 @@
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.concurrent.CountDownLatch;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+// Checks that a FlatKruskal resumed from a checkpoint file in a new object
+// finishes with exactly the same state as one that ran straight through
+class KruskalCheckpointTest {
+  @TempDir
+  Path directory;
+
+  @Test
+  void resumedRunMatchesStraightRun() throws IOException {
+    for (ITopology topology : TestMazes.topologies(300, 200)) {
+      String name = topology.getClass().getSimpleName();
+      FlatKruskal straight = new FlatKruskal(topology, 11, 3);
+      straight.runKruskalImmediately();
+
+      Path file = this.directory.resolve(name + ".checkpoint");
+      FlatKruskal first = new FlatKruskal(topology, 11, 3);
+      CheckpointWriter writer = new CheckpointWriter(file);
+      first.runKruskal(topology.cellCount() * 7L, topology.cellCount() / 2, writer);
+      writer.close();
+      assertTrue(first.edgesInTree > 0 && first.edgesInTree < topology.cellCount() - 1,
+          name + " checkpoint taken partway");
+
+      FlatKruskal resumed = new FlatKruskal(topology, 11, 3);
+      KruskalCheckpoint.read(file).restore(resumed);
+      resumed.runKruskalImmediately();
+      assertEquals(straight.maze.passages, resumed.maze.passages, name);
+      assertArrayEquals(straight.representatives, resumed.representatives, name);
+      assertEquals(straight.edgesInTree, resumed.edgesInTree, name);
+    }
+  }
+
+  @Test
+  void restoreRejectsDifferentTopology() {
+    KruskalCheckpoint checkpoint = new KruskalCheckpoint(
+        new FlatKruskal(new RectTopology(20, 30), 11, 3));
+    ITopology[] others = {new RectTopology(30, 20), new TorusTopology(20, 30),
+        new StackedTopology(20, 15, 2)};
+    for (ITopology other : others) {
+      assertEquals(600, other.cellCount());
+      FlatKruskal kruskal = new FlatKruskal(other, 11, 3);
+      assertThrows(IllegalArgumentException.class, () -> checkpoint.restore(kruskal),
+          other.getClass().getSimpleName());
+    }
+  }
+
+  @Test
+  void readRejectsOtherVersions() throws IOException {
+    ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+    new KruskalCheckpoint(new FlatKruskal(new RectTopology(20, 30), 11, 3))
+        .writeTo(new DataOutputStream(bytes));
+    byte[] written = bytes.toByteArray();
+    KruskalCheckpoint.readFrom(new DataInputStream(new ByteArrayInputStream(written)));
+    // the version follows the 4 byte magic number
+    written[7]++;
+    assertThrows(IOException.class, () -> KruskalCheckpoint.readFrom(
+        new DataInputStream(new ByteArrayInputStream(written))));
+  }
+
+  @Test
+  void runRejectsIntervalsBelowOne() {
+    FlatKruskal kruskal = new FlatKruskal(new RectTopology(20, 30), 11, 3);
+    CheckpointWriter writer = new CheckpointWriter(this.directory.resolve("never"));
+    assertThrows(IllegalArgumentException.class, () -> kruskal.runKruskal(100, 0, writer));
+    assertThrows(IllegalArgumentException.class, () -> kruskal.runKruskal(100, -5, writer));
+  }
+
+  @Test
+  void failedWriteIsThrownOnNextOffer() {
+    FlatKruskal kruskal = new FlatKruskal(new RectTopology(20, 30), 11, 3);
+    CheckpointWriter writer = new CheckpointWriter(
+        this.directory.resolve("missing").resolve("checkpoint"));
+    assertThrows(IllegalStateException.class, () -> kruskal.runKruskal(10000, 100, writer));
+    assertThrows(IOException.class, () -> writer.close());
+  }
+
+  // a writer held partway through a write must not copy another checkpoint over the one
+  // it is writing, and the snapshot is refilled in place once it is free
+  @Test
+  void offerSkipsWhileWritingAndReusesSnapshot() throws Exception {
+    CountDownLatch release = new CountDownLatch(1);
+    CheckpointWriter writer = new CheckpointWriter(this.directory.resolve("held")) {
+      void write(KruskalCheckpoint checkpoint) {
+        try {
+          release.await();
+        } catch (InterruptedException e) {
+          Thread.currentThread().interrupt();
+        }
+        super.write(checkpoint);
+      }
+    };
+    FlatKruskal kruskal = new FlatKruskal(new RectTopology(20, 30), 11, 3);
+    kruskal.runKruskal(100);
+    assertTrue(writer.offer(kruskal));
+    int[] representatives = writer.snapshot.representatives;
+    int edgesInTree = writer.snapshot.edgesInTree;
+
+    kruskal.runKruskal(400);
+    assertFalse(writer.offer(kruskal));
+    assertEquals(edgesInTree, writer.snapshot.edgesInTree);
+
+    release.countDown();
+    writer.awaitIdle();
+    assertTrue(writer.offer(kruskal));
+    assertSame(representatives, writer.snapshot.representatives);
+    assertArrayEquals(kruskal.representatives, writer.snapshot.representatives);
+    writer.close();
+    assertEquals(kruskal.edgesInTree,
+        KruskalCheckpoint.read(this.directory.resolve("held")).edgesInTree);
+  }
+}
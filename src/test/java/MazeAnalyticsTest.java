@@ -0,0 +1,176 @@
+import java.util.Random;
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+// Checks MazeAnalytics against brute force counts: degrees cell by cell, corridors and
+// runs as groups of cells joined by a union-find, and the diameter by a breadth-first
+// search from every cell
+class MazeAnalyticsTest {
+  @Test
+  void perfectMazeMatchesBruteForce() {
+    for (ITopology topology : TestMazes.topologies(24, 16)) {
+      FlatMaze maze = new FlatKruskal(topology, 12, 2).runKruskalImmediately();
+      MazeAnalytics analytics = this.checkCounts(maze);
+      analytics.findDiameter();
+
+      String name = topology.getClass().getSimpleName();
+      int diameter = 0;
+      for (int cell = 0; cell < topology.cellCount(); cell++) {
+        for (int distance : TestMazes.distances(maze, cell)) {
+          diameter = Math.max(diameter, distance);
+        }
+      }
+      assertTrue(analytics.treeDiameter(), name);
+      assertEquals(diameter, analytics.diameter, name);
+      assertEquals(diameter,
+          TestMazes.distances(maze, analytics.diameterFrom)[analytics.diameterTo], name);
+    }
+  }
+
+  // loops give corridors that come back to the junction they left,
+  // and wrapping rows of the torus give runs with no first cell
+  @Test
+  void braidedMazeMatchesBruteForce() {
+    for (ITopology topology : TestMazes.topologies(24, 16)) {
+      FlatMaze maze = new FlatKruskal(topology, 14, 1).runKruskalImmediately();
+      Random rand = new Random(6);
+      for (int i = 0; i < topology.cellCount() / 3; i++) {
+        int edge = maze.edge(rand.nextInt(topology.cellCount()),
+            rand.nextInt(topology.forwardDirections()));
+        if (edge >= 0) {
+          maze.passages.set(edge);
+        }
+      }
+      MazeAnalytics analytics = this.checkCounts(maze);
+      assertFalse(analytics.treeDiameter());
+      analytics.findDiameter();
+      assertEquals(analytics.diameter,
+          TestMazes.distances(maze, analytics.diameterFrom)[analytics.diameterTo]);
+    }
+  }
+
+  // a row open all the way around a torus is a ring of corridor cells
+  // and a run with no cell to start from, and is counted once as each
+  @Test
+  void torusRingIsCountedOnce() {
+    TorusTopology topology = new TorusTopology(7, 5);
+    FlatMaze maze = new FlatMaze(topology);
+    for (int x = 0; x < 7; x++) {
+      maze.setOpen(7 + x, 0, true);
+    }
+    // a column from the ring's first cell down to the last row,
+    // so that cell is a junction and the rest of the ring is one corridor
+    for (int y = 1; y < 4; y++) {
+      maze.setOpen(7 * y, 1, true);
+    }
+    MazeAnalytics analytics = this.checkCounts(maze);
+    assertEquals(1, analytics.runHistograms[0][7]);
+    assertEquals(1, analytics.corridorHistogram[6]);
+
+    maze.setOpen(7, 1, false);
+    analytics = this.checkCounts(maze);
+    assertEquals(1, analytics.corridorHistogram[7]);
+  }
+
+  // runs every count but the diameter and checks them against brute force counts
+  MazeAnalytics checkCounts(FlatMaze maze) {
+    ITopology topology = maze.topology;
+    String name = topology.getClass().getSimpleName();
+    MazeAnalytics analytics = new MazeAnalytics(maze);
+    analytics.countDegrees();
+    analytics.countRuns();
+    analytics.countCorridors();
+
+    int cells = topology.cellCount();
+    int[] degrees = new int[cells];
+    long[] degreeHistogram = new long[topology.directions() + 1];
+    for (int cell = 0; cell < cells; cell++) {
+      for (int direction = 0; direction < topology.directions(); direction++) {
+        if (maze.isOpen(cell, direction)) {
+          degrees[cell]++;
+        }
+      }
+      degreeHistogram[degrees[cell]]++;
+    }
+    assertArrayEquals(degreeHistogram, analytics.degreeHistogram, name);
+    assertEquals(degreeHistogram[1], analytics.deadEnds(), name);
+    long junctions = 0;
+    for (int degree = 3; degree < degreeHistogram.length; degree++) {
+      junctions += degreeHistogram[degree];
+    }
+    assertEquals(junctions, analytics.junctions(), name);
+
+    // a corridor is a group of corridor cells joined by passages
+    int[] groups = new int[cells];
+    for (int cell = 0; cell < cells; cell++) {
+      groups[cell] = cell;
+    }
+    for (int cell = 0; cell < cells; cell++) {
+      for (int direction = 0; direction < topology.directions(); direction++) {
+        int next = topology.neighbor(cell, direction);
+        if (degrees[cell] == 2 && next >= 0 && degrees[next] == 2
+            && maze.isOpen(cell, direction)) {
+          union(groups, cell, next);
+        }
+      }
+    }
+    long[] corridorHistogram = new long[MazeAnalytics.MAX_LENGTH + 1];
+    int[] sizes = new int[cells];
+    for (int cell = 0; cell < cells; cell++) {
+      if (degrees[cell] == 2) {
+        sizes[find(groups, cell)]++;
+      }
+    }
+    for (int size : sizes) {
+      if (size > 0) {
+        corridorHistogram[Math.min(size, MazeAnalytics.MAX_LENGTH)]++;
+      }
+    }
+    assertArrayEquals(corridorHistogram, analytics.corridorHistogram, name);
+
+    // a run is a group of cells joined by passages in one direction,
+    // as long as the number of those passages in it
+    for (int direction = 0; direction < topology.forwardDirections(); direction++) {
+      for (int cell = 0; cell < cells; cell++) {
+        groups[cell] = cell;
+      }
+      for (int cell = 0; cell < cells; cell++) {
+        if (maze.isOpen(cell, direction)) {
+          union(groups, cell, topology.neighbor(cell, direction));
+        }
+      }
+      int[] passages = new int[cells];
+      for (int cell = 0; cell < cells; cell++) {
+        if (maze.isOpen(cell, direction)) {
+          passages[find(groups, cell)]++;
+        }
+      }
+      long[] runHistogram = new long[MazeAnalytics.MAX_LENGTH + 1];
+      for (int count : passages) {
+        if (count > 0) {
+          runHistogram[Math.min(count, MazeAnalytics.MAX_LENGTH)]++;
+        }
+      }
+      assertArrayEquals(runHistogram, analytics.runHistograms[direction],
+          name + " direction " + direction);
+    }
+    return analytics;
+  }
+
+  // returns the group of the given cell
+  static int find(int[] groups, int cell) {
+    while (groups[cell] != cell) {
+      cell = groups[cell];
+    }
+    return cell;
+  }
+
+  // EFFECT: joins the groups of the given cells
+  static void union(int[] groups, int a, int b) {
+    groups[find(groups, a)] = find(groups, b);
+  }
+}
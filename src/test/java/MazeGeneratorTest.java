@@ -0,0 +1,46 @@
+import java.util.ArrayList;
+import java.util.PriorityQueue;
+import java.util.Random;
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+// Checks that Kruskal's algorithm on a Graph makes a minimum spanning tree
+class MazeGeneratorTest {
+  @Test
+  void kruskalMatchesPrim() {
+    for (int seed = 0; seed < 5; seed++) {
+      Graph graph = new Graph(40, 30, 1 + seed % 3, new Random(seed));
+      Kruskal kruskal = new Kruskal(graph);
+      kruskal.runKruskalImmediately();
+      assertEquals(graph.cells.size() - 1, kruskal.edgesInTree.size(),
+          "seed " + seed + " has cells - 1 edges");
+      assertEquals(primWeight(graph), kruskal.sumWeights(),
+          "seed " + seed + " weighs the same as Prim's tree");
+    }
+  }
+
+  // returns the weight of a minimum spanning tree of the given graph
+  static long primWeight(Graph graph) {
+    ArrayList<Cell> cells = graph.cells;
+    boolean[] inTree = new boolean[cells.size()];
+    int width = 0;
+    for (Cell cell : cells) {
+      width = Math.max(width, cell.x + 1);
+    }
+    PriorityQueue<Edge> frontier = new PriorityQueue<Edge>(new SortEdgeByWeight());
+    frontier.addAll(cells.get(0).outEdges);
+    inTree[0] = true;
+    long total = 0;
+    while (!frontier.isEmpty()) {
+      Edge edge = frontier.remove();
+      int to = width * edge.to.y + edge.to.x;
+      if (!inTree[to]) {
+        inTree[to] = true;
+        total += edge.weight;
+        frontier.addAll(edge.to.outEdges);
+      }
+    }
+    return total;
+  }
+}
@@ -0,0 +1,154 @@
+import java.util.Random;
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+// Checks a MutableMaze against a fresh breadth-first search of its passages
+// after every wall it opens or closes, and that the trees of each level stay small
+class MutableMazeTest {
+  // opens and closes walls of a perfect maze without ever closing a loop,
+  // so the forest path is the only path and must be the shortest one
+  @Test
+  void perfectMazeMatchesBfs() {
+    for (ITopology topology : TestMazes.topologies(30, 20)) {
+      FlatMaze maze = new FlatKruskal(topology, 5, 1).runKruskalImmediately();
+      int goal = topology.cellCount() - 1;
+      MutableMaze mutable = new MutableMaze(maze, 0, goal);
+      Random rand = new Random(1);
+      for (int i = 0; i < 3000; i++) {
+        int cell = rand.nextInt(topology.cellCount());
+        int direction = rand.nextInt(topology.directions());
+        int other = topology.neighbor(cell, direction);
+        if (rand.nextBoolean()) {
+          mutable.closeWall(cell, direction);
+        } else if (other >= 0 && TestMazes.distances(maze, cell)[other] == -1) {
+          mutable.openWall(cell, direction);
+        }
+        assertEquals(0, mutable.extraCount);
+        int[] distances = TestMazes.distances(maze, 0);
+        this.checkAgainst(mutable, distances, rand);
+        assertEquals(distances[goal], mutable.pathLength(),
+            topology.getClass().getSimpleName() + " step " + i);
+      }
+    }
+  }
+
+  // opens and closes walls freely, so loops come and go and closing a forest passage
+  // has to find an extra passage to replace it
+  @Test
+  void braidedMazeMatchesBfs() {
+    for (ITopology topology : TestMazes.topologies(30, 20)) {
+      FlatMaze maze = new FlatKruskal(topology, 9, 2).runKruskalImmediately();
+      Random rand = new Random(2);
+      for (int i = 0; i < topology.cellCount() / 4; i++) {
+        int edge = maze.edge(rand.nextInt(topology.cellCount()),
+            rand.nextInt(topology.forwardDirections()));
+        if (edge >= 0) {
+          maze.passages.set(edge);
+        }
+      }
+      int goal = topology.cellCount() - 1;
+      MutableMaze mutable = new MutableMaze(maze, 0, goal);
+      assertTrue(mutable.extraCount > 0);
+      for (int i = 0; i < 3000; i++) {
+        int cell = rand.nextInt(topology.cellCount());
+        int direction = rand.nextInt(topology.directions());
+        if (rand.nextBoolean()) {
+          mutable.closeWall(cell, direction);
+        } else {
+          mutable.openWall(cell, direction);
+        }
+        int[] distances = TestMazes.distances(maze, 0);
+        this.checkAgainst(mutable, distances, rand);
+        if (mutable.isSolvable()) {
+          assertTrue(mutable.pathLength() >= distances[goal]);
+        }
+        if (mutable.extraCount == 0) {
+          assertEquals(distances[goal], mutable.pathLength());
+        }
+      }
+    }
+  }
+
+  // opens nine walls in ten, then keeps closing forest passages, so nearly every close
+  // needs a replacement and passages climb the levels
+  @Test
+  void heavilyBraidedMazeReplacesForestPassages() {
+    for (ITopology topology : TestMazes.topologies(30, 20)) {
+      String name = topology.getClass().getSimpleName();
+      FlatMaze maze = new FlatKruskal(topology, 3, 1).runKruskalImmediately();
+      int cells = topology.cellCount();
+      Random rand = new Random(3);
+      for (int cell = 0; cell < cells; cell++) {
+        for (int direction = 0; direction < topology.forwardDirections(); direction++) {
+          int edge = maze.edge(cell, direction);
+          if (edge >= 0 && rand.nextInt(10) < 9) {
+            maze.passages.set(edge);
+          }
+        }
+      }
+      MutableMaze mutable = new MutableMaze(maze, 0, cells - 1);
+      int replaced = 0;
+      for (int i = 0; i < 3000; i++) {
+        int cell = rand.nextInt(cells);
+        int direction = rand.nextInt(topology.directions());
+        int edge = maze.edge(cell, direction);
+        if (edge < 0) {
+          continue;
+        }
+        if (maze.passages.get(edge) && !mutable.extraPassages.get(edge)) {
+          int extras = mutable.extraCount;
+          assertTrue(mutable.closeWall(cell, direction));
+          if (mutable.extraCount < extras) {
+            replaced++;
+          }
+        } else if (!maze.passages.get(edge) && rand.nextInt(3) == 0) {
+          assertTrue(mutable.openWall(cell, direction));
+        }
+        this.checkAgainst(mutable, TestMazes.distances(maze, 0), rand);
+        // a tree at level l has at most cells / 2^l cells
+        for (int level = 1; level < mutable.levels.length; level++) {
+          if (mutable.levels[level] != null) {
+            assertTrue(mutable.levels[level].treeSize(rand.nextInt(cells)) <= cells >> level,
+                name + " level " + level);
+          }
+        }
+      }
+      assertTrue(replaced > 500, name + " replaced " + replaced);
+      assertNotNull(mutable.levels[1], name);
+    }
+  }
+
+  // checks connectivity, isSolvable, path and pathLength against the given
+  // distances from the start
+  void checkAgainst(MutableMaze mutable, int[] distances, Random rand) {
+    FlatMaze maze = mutable.maze;
+    ITopology topology = mutable.topology;
+    int a = rand.nextInt(topology.cellCount());
+    int b = rand.nextInt(topology.cellCount());
+    boolean connected = TestMazes.distances(maze, a)[b] >= 0;
+    assertEquals(connected, mutable.forest.connected(a, b));
+    assertEquals(connected, mutable.levels[0].connected(a, b));
+    assertEquals(distances[mutable.goal] >= 0, mutable.isSolvable());
+
+    int[] path = mutable.path();
+    if (!mutable.isSolvable()) {
+      assertEquals(0, path.length);
+      assertEquals(-1, mutable.pathLength());
+      return;
+    }
+    assertEquals(mutable.start, path[0]);
+    assertEquals(mutable.goal, path[path.length - 1]);
+    assertEquals(path.length - 1, mutable.pathLength());
+    for (int i = 1; i < path.length; i++) {
+      boolean open = false;
+      for (int direction = 0; direction < topology.directions(); direction++) {
+        open |= topology.neighbor(path[i - 1], direction) == path[i]
+            && maze.isOpen(path[i - 1], direction);
+      }
+      assertTrue(open, "the path goes through an open passage at " + i);
+    }
+  }
+}
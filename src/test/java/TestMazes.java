@@ -0,0 +1,37 @@
+import java.util.ArrayDeque;
+import java.util.Arrays;
+
+// Fixtures shared by the maze tests: one topology of every kind, and a plain
+// breadth-first search to check the faster searches against
+class TestMazes {
+  // returns one topology of every kind, the flat ones of the given width and height,
+  // and the stacked one a quarter as wide and high in 8 levels
+  static ITopology[] topologies(int width, int height) {
+    return new ITopology[] {new RectTopology(width, height), new TorusTopology(width, height),
+        new HexTopology(width, height), new StackedTopology(width / 4, height / 4, 8)};
+  }
+
+  // returns the number of moves from the given cell to every cell, or -1 where
+  // it cannot be reached
+  static int[] distances(FlatMaze maze, int from) {
+    ITopology topology = maze.topology;
+    int[] distances = new int[topology.cellCount()];
+    Arrays.fill(distances, -1);
+    distances[from] = 0;
+    ArrayDeque<Integer> worklist = new ArrayDeque<Integer>();
+    worklist.add(from);
+    while (!worklist.isEmpty()) {
+      int cell = worklist.remove();
+      for (int direction = 0; direction < topology.directions(); direction++) {
+        if (maze.isOpen(cell, direction)) {
+          int next = topology.neighbor(cell, direction);
+          if (distances[next] == -1) {
+            distances[next] = distances[cell] + 1;
+            worklist.add(next);
+          }
+        }
+      }
+    }
+    return distances;
+  }
+}